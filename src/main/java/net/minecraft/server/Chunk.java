@@ -30,6 +30,7 @@ public class Chunk {
     private boolean w;
     public Map tileEntities;
     public List[] entitySlices;
+    public final Map<Class<?>, int[]> entityTypeCounts = new HashMap<Class<?>, int[]>(); // CraftBukkit - Entities in the slices by class
     public boolean done;
     public boolean lit;
     public boolean m;
@@ -498,12 +499,67 @@ public class Chunk {
                     }
                 }
 
+                this.world.collisionShapeCache.invalidate(l1, j, i2); // CraftBukkit
                 this.n = true;
                 return true;
             }
         }
     }
 
+    // CraftBukkit start - Raw block writes for block change batches
+    // Writes a block without block hooks, relighting or notifications; returns the replaced block, or null if nothing changed
+    public Block setTypeRaw(int i, int j, int k, Block block, int l) {
+        ChunkSection chunksection = this.sections[j >> 4];
+
+        if (chunksection == null) {
+            if (block == Blocks.AIR) {
+                return null;
+            }
+
+            chunksection = this.sections[j >> 4] = new ChunkSection(j >> 4 << 4, !this.world.worldProvider.g);
+        }
+
+        Block block1 = chunksection.getTypeId(i, j & 15, k);
+
+        if (block1 == block && chunksection.getData(i, j & 15, k) == l) {
+            return null;
+        }
+
+        int l1 = this.locX * 16 + i;
+        int i2 = this.locZ * 16 + k;
+
+        if (block1 != block && block1 instanceof IContainer) {
+            this.world.p(l1, j, i2);
+        }
+
+        chunksection.setTypeId(i, j & 15, k, block);
+        chunksection.setData(i, j & 15, k, l);
+        if (block instanceof IContainer) {
+            TileEntity tileentity = this.e(i, j, k);
+
+            if (tileentity != null) {
+                tileentity.u();
+            }
+        }
+
+        this.world.collisionShapeCache.invalidate(l1, j, i2);
+        this.n = true;
+        return block1;
+    }
+
+    // Updates the height map and sky light of a column up to the highest block written, then queues the sideways sky light check
+    public void relightColumn(int i, int j, int k) {
+        int i1 = k << 4 | i;
+
+        if (j >= this.b[i1] - 1) {
+            this.b[i1] = -999;
+        }
+
+        this.h(i, j + 1, k);
+        this.e(i, k);
+    }
+    // CraftBukkit end
+
     public boolean a(int i, int j, int k, int l) {
         ChunkSection chunksection = this.sections[j >> 4];
 
@@ -526,6 +582,7 @@ public class Chunk {
                     }
                 }
 
+                this.world.collisionShapeCache.invalidate(this.locX * 16 + i, j, this.locZ * 16 + k); // CraftBukkit
                 return true;
             }
         }
@@ -607,6 +664,7 @@ public class Chunk {
         entity.ai = k;
         entity.aj = this.locZ;
         this.entitySlices[k].add(entity);
+        org.bukkit.craftbukkit.util.EntityTypeIndex.count(this, entity, 1); // CraftBukkit
     }
 
     public void b(Entity entity) {
@@ -622,7 +680,11 @@ public class Chunk {
             i = this.entitySlices.length - 1;
         }
 
-        this.entitySlices[i].remove(entity);
+        // CraftBukkit start
+        if (this.entitySlices[i].remove(entity)) {
+            org.bukkit.craftbukkit.util.EntityTypeIndex.count(this, entity, -1);
+        }
+        // CraftBukkit end
     }
 
     public boolean d(int i, int j, int k) {
@@ -670,9 +732,16 @@ public class Chunk {
         tileentity.x = this.locX * 16 + i;
         tileentity.y = j;
         tileentity.z = this.locZ * 16 + k;
+        ((org.bukkit.craftbukkit.util.TileEntityRegistry) this.world.tileEntityList).relocate(tileentity); // CraftBukkit - File it under this chunk if it was added before its position was set
         if (this.getType(i, j, k) instanceof IContainer) {
             if (this.tileEntities.containsKey(chunkposition)) {
-                ((TileEntity) this.tileEntities.get(chunkposition)).s();
+                // CraftBukkit start - The tile entity pass never sees a replaced tile entity that does not tick, drop it from the world now
+                TileEntity old = (TileEntity) this.tileEntities.get(chunkposition);
+                old.s();
+                if (old != tileentity && !org.bukkit.craftbukkit.util.TileEntityRegistry.isTicking(old.getClass())) {
+                    this.world.tileEntityList.remove(old);
+                }
+                // CraftBukkit end
             }
 
             tileentity.t();
@@ -718,6 +787,10 @@ public class Chunk {
 
     public void removeEntities() {
         this.d = false;
+        // CraftBukkit start - Remove the chunk's tile entities from the world in bulk
+        ((org.bukkit.craftbukkit.util.TileEntityRegistry) this.world.tileEntityList).removeChunk(this.locX, this.locZ);
+        this.world.collisionShapeCache.removeChunk(this.locX, this.locZ);
+        /*
         Iterator iterator = this.tileEntities.values().iterator();
 
         while (iterator.hasNext()) {
@@ -725,6 +798,8 @@ public class Chunk {
 
             this.world.a(tileentity);
         }
+        */
+        // CraftBukkit end
 
         for (int i = 0; i < this.entitySlices.length; ++i) {
             // CraftBukkit start
@@ -736,6 +811,7 @@ public class Chunk {
                 // (which for example disables inventory icon updates and prevents block breaking)
                 if (entity instanceof EntityPlayer) {
                     iter.remove();
+                    org.bukkit.craftbukkit.util.EntityTypeIndex.count(this, entity, -1);
                 }
             }
             // CraftBukkit end
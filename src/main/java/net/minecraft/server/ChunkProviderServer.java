@@ -323,6 +323,7 @@ public class ChunkProviderServer implements IChunkProvider {
                         this.saveChunk(chunk);
                         this.saveChunkNOP(chunk);
                         this.chunks.remove(chunkcoordinates); // CraftBukkit
+                        this.world.getWorld().getBlockMetadata().removeAll(chunk.locX, chunk.locZ); // CraftBukkit
                     }
 
                     // this.unloadQueue.remove(olong);
@@ -1,5 +1,7 @@
 package net.minecraft.server;
 
+import java.util.concurrent.atomic.AtomicLong; // CraftBukkit
+
 public class ChunkSection {
 
     private int yPos;
@@ -10,6 +12,13 @@ public class ChunkSection {
     private NibbleArray blockData;
     private NibbleArray emittedLight;
     private NibbleArray skyLight;
+    // CraftBukkit start - Arrays shared with chunk snapshots are copied before they are next written
+    private static final int SHARED_IDS = 1, SHARED_EXT_IDS = 2, SHARED_DATA = 4, SHARED_EMITTED_LIGHT = 8, SHARED_SKY_LIGHT = 16;
+    private static final AtomicLong snapshotSharedBytes = new AtomicLong();
+    private static final AtomicLong snapshotCopiedBytes = new AtomicLong();
+    private int shared;
+    private org.bukkit.craftbukkit.util.SnapshotLease lease;
+    // CraftBukkit end
 
     public ChunkSection(int i, boolean flag) {
         this.yPos = i;
@@ -72,6 +81,7 @@ public class ChunkSection {
 
         int i1 = Block.b(block);
 
+        this.unshare(SHARED_IDS | SHARED_EXT_IDS); // CraftBukkit
         this.blockIds[j << 8 | k << 4 | i] = (byte) (i1 & 255);
         if (i1 > 255) {
             if (this.extBlockIds == null) {
@@ -89,6 +99,7 @@ public class ChunkSection {
     }
 
     public void setData(int i, int j, int k, int l) {
+        this.unshare(SHARED_DATA); // CraftBukkit
         this.blockData.a(i, j, k, l);
     }
 
@@ -105,6 +116,7 @@ public class ChunkSection {
     }
 
     public void setSkyLight(int i, int j, int k, int l) {
+        this.unshare(SHARED_SKY_LIGHT); // CraftBukkit
         this.skyLight.a(i, j, k, l);
     }
 
@@ -113,6 +125,7 @@ public class ChunkSection {
     }
 
     public void setEmittedLight(int i, int j, int k, int l) {
+        this.unshare(SHARED_EMITTED_LIGHT); // CraftBukkit
         this.emittedLight.a(i, j, k, l);
     }
 
@@ -122,6 +135,7 @@ public class ChunkSection {
 
     public void recalcBlockCounts() {
         // CraftBukkit start - Optimize for speed
+        this.unshare(SHARED_IDS | SHARED_EXT_IDS);
         byte[] blkIds = this.blockIds;
         int cntNonEmpty = 0;
         int cntTicking = 0;
@@ -219,6 +233,7 @@ public class ChunkSection {
 
     public void setIdArray(byte[] abyte) {
         this.blockIds = this.validateByteArray(abyte); // CraftBukkit - Validate data
+        this.shared &= ~SHARED_IDS; // CraftBukkit
     }
 
     public void setExtendedIdArray(NibbleArray nibblearray) {
@@ -237,18 +252,22 @@ public class ChunkSection {
         // CraftBukkit end
 
         this.extBlockIds = this.validateNibbleArray(nibblearray); // CraftBukkit - Validate data
+        this.shared &= ~SHARED_EXT_IDS; // CraftBukkit
     }
 
     public void setDataArray(NibbleArray nibblearray) {
         this.blockData = this.validateNibbleArray(nibblearray); // CraftBukkit - Validate data
+        this.shared &= ~SHARED_DATA; // CraftBukkit
     }
 
     public void setEmittedLightArray(NibbleArray nibblearray) {
         this.emittedLight = this.validateNibbleArray(nibblearray); // CraftBukkit - Validate data
+        this.shared &= ~SHARED_EMITTED_LIGHT; // CraftBukkit
     }
 
     public void setSkyLightArray(NibbleArray nibblearray) {
         this.skyLight = this.validateNibbleArray(nibblearray); // CraftBukkit - Validate data
+        this.shared &= ~SHARED_SKY_LIGHT; // CraftBukkit
     }
 
     // CraftBukkit start - Validate array lengths
@@ -272,4 +291,101 @@ public class ChunkSection {
         return byteArray;
     }
     // CraftBukkit end
+
+    // CraftBukkit start - Copy-on-write for chunk snapshots
+    /**
+     * Marks the arrays of this section as shared with a chunk snapshot. The
+     * arrays returned by the getters may then be kept without copying them;
+     * the section copies each array before it next writes to it.
+     *
+     * @return the lease the snapshot must hold for as long as it holds the
+     *     arrays, see {@link org.bukkit.craftbukkit.util.SnapshotLease}
+     */
+    public org.bukkit.craftbukkit.util.SnapshotLease shareWithSnapshot() {
+        int bytes = this.blockIds.length + this.blockData.a.length + this.emittedLight.a.length;
+        if (this.extBlockIds != null) {
+            bytes += this.extBlockIds.a.length;
+        }
+        if (this.skyLight != null) {
+            bytes += this.skyLight.a.length;
+        }
+
+        if (this.lease == null) {
+            this.lease = new org.bukkit.craftbukkit.util.SnapshotLease();
+        }
+        this.shared = SHARED_IDS | SHARED_EXT_IDS | SHARED_DATA | SHARED_EMITTED_LIGHT | SHARED_SKY_LIGHT;
+        snapshotSharedBytes.addAndGet(bytes);
+        return this.lease;
+    }
+
+    private void unshare(int arrays) {
+        int copy = this.shared & arrays;
+        if (copy == 0) {
+            return;
+        }
+
+        int bytes = 0;
+        if ((copy & SHARED_IDS) != 0) {
+            this.blockIds = this.blockIds.clone();
+            bytes += this.blockIds.length;
+        }
+        if ((copy & SHARED_EXT_IDS) != 0 && this.extBlockIds != null) {
+            this.extBlockIds = new NibbleArray(this.extBlockIds.a.clone(), 4);
+            bytes += this.extBlockIds.a.length;
+        }
+        if ((copy & SHARED_DATA) != 0) {
+            this.blockData = new NibbleArray(this.blockData.a.clone(), 4);
+            bytes += this.blockData.a.length;
+        }
+        if ((copy & SHARED_EMITTED_LIGHT) != 0) {
+            this.emittedLight = new NibbleArray(this.emittedLight.a.clone(), 4);
+            bytes += this.emittedLight.a.length;
+        }
+        if ((copy & SHARED_SKY_LIGHT) != 0 && this.skyLight != null) {
+            this.skyLight = new NibbleArray(this.skyLight.a.clone(), 4);
+            bytes += this.skyLight.a.length;
+        }
+
+        this.shared &= ~copy;
+        snapshotCopiedBytes.addAndGet(bytes);
+        // The old arrays now belong to the snapshots alone
+        this.lease.retain(bytes);
+        if (this.shared == 0) {
+            this.lease = null;
+        }
+    }
+
+    /**
+     * Gets the total number of bytes of section arrays handed to chunk
+     * snapshots without copying them since the server started.
+     *
+     * @return the bytes shared so far
+     */
+    public static long getSnapshotSharedBytes() {
+        return snapshotSharedBytes.get();
+    }
+
+    /**
+     * Gets the total number of bytes copied since the server started because
+     * a section was written while its arrays were shared with a snapshot.
+     * See {@link #getSnapshotRetainedBytes()} for the memory snapshots hold
+     * right now.
+     *
+     * @return the bytes copied on write so far
+     */
+    public static long getSnapshotCopiedBytes() {
+        return snapshotCopiedBytes.get();
+    }
+
+    /**
+     * Gets the number of bytes of old section arrays that only chunk
+     * snapshots still hold, the memory snapshots keep on top of the live
+     * chunks. Drops as the snapshots are garbage collected.
+     *
+     * @return the retained bytes
+     */
+    public static long getSnapshotRetainedBytes() {
+        return org.bukkit.craftbukkit.util.SnapshotLease.getRetainedBytes();
+    }
+    // CraftBukkit end
 }
@@ -30,6 +30,12 @@ public abstract class Container {
 
     // CraftBukkit start
     public boolean checkReachable = true;
+    private static final int VERIFY_TAGS_INTERVAL = 20;
+    private ItemStack[] seenStacks = new ItemStack[0];
+    private NBTTagCompound[] seenTags;
+    private int[] seenTagVersions;
+    private int[] changedSlots;
+    private int verifyTicks = (int) (Math.random() * VERIFY_TAGS_INTERVAL);
     public abstract InventoryView getBukkitView();
     public void transferTo(Container other, org.bukkit.craftbukkit.entity.CraftHumanEntity player) {
         InventoryView source = this.getBukkitView(), destination = other.getBukkitView();
@@ -70,21 +76,72 @@ public abstract class Container {
     }
 
     public void b() {
-        for (int i = 0; i < this.c.size(); ++i) {
+        // CraftBukkit start - Only compare and clone stacks that may have changed, send many changes as one packet
+        int size = this.c.size();
+        if (this.seenStacks.length != size) {
+            this.seenStacks = new ItemStack[size];
+            this.seenTags = new NBTTagCompound[size];
+            this.seenTagVersions = new int[size];
+            this.changedSlots = new int[size];
+        }
+
+        // Tags edited without going through ItemStack are only noticed on the periodic full comparison
+        boolean verifyTags = ++this.verifyTicks >= VERIFY_TAGS_INTERVAL;
+        if (verifyTags) {
+            this.verifyTicks = 0;
+        }
+
+        int changed = 0;
+        for (int i = 0; i < size; ++i) {
             ItemStack itemstack = ((Slot) this.c.get(i)).getItem();
             ItemStack itemstack1 = (ItemStack) this.b.get(i);
 
+            if (this.isUnchanged(i, itemstack, itemstack1) && (!verifyTags || itemstack == null || itemstack.tag == null)) {
+                continue;
+            }
+
+            this.seenStacks[i] = itemstack;
+            this.seenTags[i] = itemstack == null ? null : itemstack.tag;
+            this.seenTagVersions[i] = itemstack == null ? 0 : itemstack.tagVersion;
+
             if (!ItemStack.matches(itemstack1, itemstack)) {
                 itemstack1 = itemstack == null ? null : itemstack.cloneItemStack();
                 this.b.set(i, itemstack1);
+                this.changedSlots[changed++] = i;
+            }
+        }
 
-                for (int j = 0; j < this.listeners.size(); ++j) {
-                    ((ICrafting) this.listeners.get(j)).a(this, i, itemstack1);
+        if (changed == 0) {
+            return;
+        }
+
+        List items = changed * 2 > size ? this.a() : null;
+        for (int j = 0; j < this.listeners.size(); ++j) {
+            ICrafting icrafting = (ICrafting) this.listeners.get(j);
+
+            if (items != null && !(icrafting instanceof EntityPlayer && ((EntityPlayer) icrafting).g)) {
+                icrafting.a(this, items);
+            } else {
+                for (int k = 0; k < changed; ++k) {
+                    int slot = this.changedSlots[k];
+                    icrafting.a(this, slot, (ItemStack) this.b.get(slot));
                 }
             }
         }
     }
 
+    // Whether the slot still holds the same stack, with the same contents, as when it was last compared
+    private boolean isUnchanged(int i, ItemStack itemstack, ItemStack itemstack1) {
+        if (itemstack != this.seenStacks[i]) {
+            return false;
+        } else if (itemstack == null) {
+            return itemstack1 == null;
+        } else {
+            return itemstack1 != null && itemstack.count == itemstack1.count && itemstack.getItem() == itemstack1.getItem() && itemstack.getData() == itemstack1.getData() && itemstack.tag == this.seenTags[i] && itemstack.tagVersion == this.seenTagVersions[i];
+        }
+    }
+    // CraftBukkit end
+
     public boolean a(EntityHuman entityhuman, int i) {
         return false;
     }
@@ -14,6 +14,7 @@ public class CraftingManager {
     public List recipes = new ArrayList(); // private -> public
     public IRecipe lastRecipe;
     public org.bukkit.inventory.InventoryView lastCraftView;
+    public final org.bukkit.craftbukkit.inventory.RecipeIndex recipeIndex = new org.bukkit.craftbukkit.inventory.RecipeIndex(this);
     // CraftBukkit end
 
     public static final CraftingManager getInstance() {
@@ -155,6 +156,7 @@ public class CraftingManager {
     // CraftBukkit start
     public void sort() {
         Collections.sort(this.recipes, new RecipeSorter(this));
+        this.recipeIndex.invalidate();
     }
     // CraftBukkit end
 
@@ -290,8 +292,12 @@ public class CraftingManager {
             return result;
             // CraftBukkit end
         } else {
-            for (j = 0; j < this.recipes.size(); ++j) {
-                IRecipe irecipe = (IRecipe) this.recipes.get(j);
+            // CraftBukkit start - Only test the recipes that could match
+            IRecipe[] candidates = this.recipeIndex.getCandidates(inventorycrafting);
+
+            for (j = 0; j < candidates.length; ++j) {
+                IRecipe irecipe = candidates[j];
+                // CraftBukkit end
 
                 if (irecipe.a(inventorycrafting, world)) {
                     // CraftBukkit start - INVENTORY_PRE_CRAFT event
@@ -90,7 +90,7 @@ public abstract class Entity {
     public int ticksLived;
     public int maxFireTicks;
     public int fireTicks; // CraftBukkit - private -> public
-    protected boolean inWater;
+    public boolean inWater; // CraftBukkit - protected -> public
     public int noDamageTicks;
     private boolean justCreated;
     protected boolean fireProof;
@@ -112,6 +112,11 @@ public abstract class Entity {
     public UUID uniqueID; // CraftBukkit - protected -> public
     public EnumEntitySize as;
     public boolean valid; // CraftBukkit
+    public int tickListIndex = -1; // CraftBukkit - slot in World.entityList
+    // CraftBukkit start
+    public final int activationType = org.bukkit.craftbukkit.util.ActivationRange.getType(this);
+    public int activatedTick;
+    // CraftBukkit end
     public org.bukkit.projectiles.ProjectileSource projectileSource; // CraftBukkit - For projectiles only
 
     public int getId() {
@@ -238,6 +243,10 @@ public abstract class Entity {
         this.boundingBox.b(d0 - (double) f, d1 - (double) this.height + (double) this.V, d2 - (double) f, d0 + (double) f, d1 - (double) this.height + (double) this.V + (double) f1, d2 + (double) f);
     }
 
+    // CraftBukkit start - Called instead of h() while out of activation range
+    public void inactiveTick() {}
+    // CraftBukkit end
+
     public void h() {
         this.B();
     }
@@ -100,6 +100,21 @@ public abstract class EntityAgeable extends EntityCreature {
         }
     }
 
+    // CraftBukkit start - Keep growing up while out of activation range
+    public void inactiveTick() {
+        super.inactiveTick();
+        if (!this.world.isStatic && !this.ageLocked) {
+            int i = this.getAge();
+
+            if (i < 0) {
+                this.setAge(i + 1);
+            } else if (i > 0) {
+                this.setAge(i - 1);
+            }
+        }
+    }
+    // CraftBukkit end
+
     public boolean isBaby() {
         return this.getAge() < 0;
     }
@@ -107,6 +107,12 @@ public class EntityExperienceOrb extends Entity {
         if (this.b >= 6000) {
             this.die();
         }
+
+        // CraftBukkit start - Merge with nearby orbs once a second
+        if (!this.world.isStatic && !this.dead && this.a % 20 == 0) {
+            this.world.entityMergeService.queue(this);
+        }
+        // CraftBukkit end
     }
 
     public boolean M() {
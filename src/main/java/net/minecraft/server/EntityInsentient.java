@@ -28,6 +28,7 @@ public abstract class EntityInsentient extends EntityLiving {
     public float[] dropChances = new float[5]; // CraftBukkit - protected -> public
     public boolean canPickUpLoot; // CraftBukkit - private -> public
     public boolean persistent = !isTypeNotPersistent(); // CraftBukkit - private -> public
+    private boolean goalsInactive; // CraftBukkit
     protected float f;
     private Entity bu;
     protected int g;
@@ -428,12 +429,24 @@ public abstract class EntityInsentient extends EntityLiving {
         this.world.methodProfiler.a("sensing");
         this.bq.a();
         this.world.methodProfiler.b();
-        this.world.methodProfiler.a("targetSelector");
-        this.targetSelector.a();
-        this.world.methodProfiler.b();
-        this.world.methodProfiler.a("goalSelector");
-        this.goalSelector.a();
-        this.world.methodProfiler.b();
+        // CraftBukkit start - Tick the goal selectors of mobs far from every player less often
+        int inactiveRange = this.world.getServer().goalInactiveRange;
+
+        if (inactiveRange <= 0) {
+            this.goalsInactive = false;
+        } else if (this.ticksLived % 20 == 0) {
+            this.goalsInactive = this.world.findNearbyPlayer(this, (double) inactiveRange) == null;
+        }
+
+        if (!this.goalsInactive || this.ticksLived % this.world.getServer().goalInactiveInterval == 0) {
+            this.world.methodProfiler.a("targetSelector");
+            this.targetSelector.a();
+            this.world.methodProfiler.b();
+            this.world.methodProfiler.a("goalSelector");
+            this.goalSelector.a();
+            this.world.methodProfiler.b();
+        }
+        // CraftBukkit end
         this.world.methodProfiler.a("navigation");
         this.navigation.f();
         this.world.methodProfiler.b();
@@ -117,6 +117,9 @@ public class EntityItem extends Entity {
     }
 
     private void k() {
+        // CraftBukkit start - Merged together with the other items queued this tick
+        this.world.entityMergeService.queue(this);
+        /*
         Iterator iterator = this.world.a(EntityItem.class, this.boundingBox.grow(0.5D, 0.0D, 0.5D)).iterator();
 
         while (iterator.hasNext()) {
@@ -124,6 +127,8 @@ public class EntityItem extends Entity {
 
             this.a(entityitem);
         }
+        */
+        // CraftBukkit end
     }
 
     public boolean a(EntityItem entityitem) {
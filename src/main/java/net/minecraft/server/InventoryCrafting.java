@@ -17,6 +17,9 @@ public class InventoryCrafting implements IInventory {
     // CraftBukkit start - add fields
     public List<HumanEntity> transaction = new java.util.ArrayList<HumanEntity>();
     public IRecipe currentRecipe;
+    public int recipeIndexVersion = -1;
+    public Object recipeIndexKey;
+    public IRecipe[] recipeCandidates;
     public IInventory resultInventory;
     private EntityHuman owner;
     private int maxStack = MAX_STACK;
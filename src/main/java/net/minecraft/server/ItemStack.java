@@ -27,6 +27,17 @@ public final class ItemStack {
     public NBTTagCompound tag;
     private int damage;
     private EntityItemFrame g;
+    public int tagVersion; // CraftBukkit - bumped whenever the tag is changed in place, see Container.b()
+    // CraftBukkit start - decoded item meta and the item and copy of the tag it was decoded from, see CraftItemStack.getItemMeta
+    public org.bukkit.inventory.meta.ItemMeta metaCache;
+    public Item metaCacheItem;
+    public NBTTagCompound metaCacheTag;
+    public int metaCacheTagHash;
+    // Structural hash of the tag, kept while the tag and tagVersion stay the same, see CraftItemStack.isSimilar
+    private NBTTagCompound hashedTag;
+    private int hashedTagVersion;
+    private int tagHash;
+    // CraftBukkit end
 
     public ItemStack(Block block) {
         this(block, 1);
@@ -406,6 +417,22 @@ public final class ItemStack {
         return this.tag != null;
     }
 
+    // CraftBukkit start
+    public int getTagHash() {
+        if (this.tag == null) {
+            return 0;
+        }
+
+        if (this.tag != this.hashedTag || this.tagVersion != this.hashedTagVersion) {
+            this.tagHash = this.tag.hashCode();
+            this.hashedTag = this.tag;
+            this.hashedTagVersion = this.tagVersion;
+        }
+
+        return this.tagHash;
+    }
+    // CraftBukkit end
+
     public NBTTagCompound getTag() {
         return this.tag;
     }
@@ -416,6 +443,10 @@ public final class ItemStack {
 
     public void setTag(NBTTagCompound nbttagcompound) {
         this.tag = nbttagcompound;
+        // CraftBukkit start
+        ++this.tagVersion;
+        this.metaCache = null;
+        // CraftBukkit end
     }
 
     public String getName() {
@@ -442,6 +473,7 @@ public final class ItemStack {
         }
 
         this.tag.getCompound("display").setString("Name", s);
+        ++this.tagVersion; // CraftBukkit
         return this;
     }
 
@@ -451,6 +483,7 @@ public final class ItemStack {
                 NBTTagCompound nbttagcompound = this.tag.getCompound("display");
 
                 nbttagcompound.remove("Name");
+                ++this.tagVersion; // CraftBukkit
                 if (nbttagcompound.isEmpty()) {
                     this.tag.remove("display");
                     if (this.tag.isEmpty()) {
@@ -488,6 +521,7 @@ public final class ItemStack {
         nbttagcompound.setShort("id", (short) enchantment.id);
         nbttagcompound.setShort("lvl", (short) ((byte) i));
         nbttaglist.add(nbttagcompound);
+        ++this.tagVersion; // CraftBukkit
     }
 
     public boolean hasEnchantments() {
@@ -500,6 +534,7 @@ public final class ItemStack {
         }
 
         this.tag.set(s, nbtbase);
+        ++this.tagVersion; // CraftBukkit
     }
 
     public boolean z() {
@@ -528,6 +563,7 @@ public final class ItemStack {
         }
 
         this.tag.setInt("RepairCost", i);
+        ++this.tagVersion; // CraftBukkit
     }
 
     public Multimap D() {
@@ -383,6 +383,7 @@ public abstract class MinecraftServer implements ICommandListener, Runnable, IMo
             // CraftBukkit start
             if (this.server != null) {
                 this.server.disablePlugins();
+                this.server.getProfileService().shutdown();
             }
             // CraftBukkit end
 
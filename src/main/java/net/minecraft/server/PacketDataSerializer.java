@@ -14,7 +14,10 @@ import net.minecraft.util.io.netty.buffer.ByteBuf;
 import net.minecraft.util.io.netty.buffer.ByteBufAllocator;
 import net.minecraft.util.io.netty.buffer.ByteBufProcessor;
 
-import org.bukkit.craftbukkit.inventory.CraftItemStack; // CraftBukkit
+// CraftBukkit start
+import org.bukkit.craftbukkit.inventory.CraftItemStack;
+import org.bukkit.craftbukkit.util.CompressedTagCache;
+// CraftBukkit end
 
 public class PacketDataSerializer extends ByteBuf {
 
@@ -91,7 +94,16 @@ public class PacketDataSerializer extends ByteBuf {
                 nbttagcompound = itemstack.tag;
             }
 
-            this.a(nbttagcompound);
+            // CraftBukkit start - reuse the compressed bytes of equal item tags
+            if (nbttagcompound == null) {
+                this.writeShort(-1);
+            } else {
+                byte[] abyte = CompressedTagCache.compress(nbttagcompound);
+
+                this.writeShort((short) abyte.length);
+                this.writeBytes(abyte);
+            }
+            // CraftBukkit end
         }
     }
 
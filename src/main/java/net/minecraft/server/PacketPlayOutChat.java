@@ -0,0 +1,64 @@
+package net.minecraft.server;
+
+import java.io.IOException; // CraftBukkit
+
+import net.minecraft.util.com.google.common.base.Charsets; // CraftBukkit
+
+public class PacketPlayOutChat extends Packet {
+
+    private IChatBaseComponent a;
+    private boolean b;
+    private volatile byte[] encoded; // CraftBukkit
+
+    public PacketPlayOutChat() {
+        this.b = true;
+    }
+
+    public PacketPlayOutChat(IChatBaseComponent ichatbasecomponent) {
+        this(ichatbasecomponent, true);
+    }
+
+    public PacketPlayOutChat(IChatBaseComponent ichatbasecomponent, boolean flag) {
+        this.b = true;
+        this.a = ichatbasecomponent;
+        this.b = flag;
+    }
+
+    public void a(PacketDataSerializer packetdataserializer) throws IOException { // CraftBukkit - added throws
+        this.a = ChatSerializer.a(packetdataserializer.c(32767));
+    }
+
+    public void b(PacketDataSerializer packetdataserializer) throws IOException { // CraftBukkit - added throws
+        // CraftBukkit start - serialize the component once, a broadcast shares the same packet between every connection
+        byte[] abyte = this.encoded;
+
+        if (abyte == null) {
+            abyte = ChatSerializer.a(this.a).getBytes(Charsets.UTF_8);
+            if (abyte.length > 32767) {
+                throw new IOException("String too big (was " + abyte.length + " bytes encoded, max " + 32767 + ")");
+            }
+
+            this.encoded = abyte;
+        }
+
+        packetdataserializer.b(abyte.length);
+        packetdataserializer.writeBytes(abyte);
+        // CraftBukkit end
+    }
+
+    public void a(PacketPlayOutListener packetplayoutlistener) {
+        packetplayoutlistener.a(this);
+    }
+
+    public String b() {
+        return String.format("message=\'%s\'", new Object[] { this.a});
+    }
+
+    public boolean d() {
+        return this.b;
+    }
+
+    public void handle(PacketListener packetlistener) {
+        this.a((PacketPlayOutListener) packetlistener);
+    }
+}
@@ -36,9 +36,10 @@ public class PathfinderGoalSelector {
             PathfinderGoal pathfindergoal1 = pathfindergoalselectoritem.a;
 
             if (pathfindergoal1 == pathfindergoal) {
-                if (this.c.contains(pathfindergoalselectoritem)) {
+                if (pathfindergoalselectoritem.running) { // CraftBukkit - use running flag
                     pathfindergoal1.d();
                     this.c.remove(pathfindergoalselectoritem);
+                    pathfindergoalselectoritem.running = false; // CraftBukkit
                 }
 
                 iterator.remove();
@@ -56,7 +57,7 @@ public class PathfinderGoalSelector {
 
             while (iterator.hasNext()) {
                 pathfindergoalselectoritem = (PathfinderGoalSelectorItem) iterator.next();
-                boolean flag = this.c.contains(pathfindergoalselectoritem);
+                boolean flag = pathfindergoalselectoritem.running; // CraftBukkit - use running flag
 
                 if (flag) {
                     if (this.b(pathfindergoalselectoritem) && this.a(pathfindergoalselectoritem)) {
@@ -65,6 +66,7 @@ public class PathfinderGoalSelector {
 
                     pathfindergoalselectoritem.a.d();
                     this.c.remove(pathfindergoalselectoritem);
+                    pathfindergoalselectoritem.running = false; // CraftBukkit
                 }
 
                 if (this.b(pathfindergoalselectoritem) && pathfindergoalselectoritem.a.a()) {
@@ -73,6 +75,7 @@ public class PathfinderGoalSelector {
                     pathfindergoalselectoritem.a.c();
                     // CraftBukkit end
                     this.c.add(pathfindergoalselectoritem);
+                    pathfindergoalselectoritem.running = true; // CraftBukkit
                 }
             }
         } else {
@@ -83,6 +86,7 @@ public class PathfinderGoalSelector {
                 if (!pathfindergoalselectoritem.a.b()) {
                     pathfindergoalselectoritem.a.d();
                     iterator.remove();
+                    pathfindergoalselectoritem.running = false; // CraftBukkit
                 }
             }
         }
@@ -121,33 +125,29 @@ public class PathfinderGoalSelector {
 
     private boolean b(PathfinderGoalSelectorItem pathfindergoalselectoritem) {
         this.d.a("canUse");
-        Iterator iterator = this.b.iterator();
-
-        while (iterator.hasNext()) {
-            PathfinderGoalSelectorItem pathfindergoalselectoritem1 = (PathfinderGoalSelectorItem) iterator.next();
+        // CraftBukkit start - Only running goals can block, so only look at those
+        for (int i = 0; i < this.c.size(); ++i) {
+            PathfinderGoalSelectorItem pathfindergoalselectoritem1 = (PathfinderGoalSelectorItem) ((UnsafeList) this.c).unsafeGet(i);
 
             if (pathfindergoalselectoritem1 != pathfindergoalselectoritem) {
                 if (pathfindergoalselectoritem.b >= pathfindergoalselectoritem1.b) {
-                    // CraftBukkit - switch order
-                    if (!this.a(pathfindergoalselectoritem, pathfindergoalselectoritem1) && this.c.contains(pathfindergoalselectoritem1)) {
+                    if (!this.a(pathfindergoalselectoritem, pathfindergoalselectoritem1)) {
                         this.d.b();
-                        ((UnsafeList.Itr) iterator).valid = false; // CraftBukkit - mark iterator for reuse
                         return false;
                     }
-                    // CraftBukkit - switch order
-                } else if (!pathfindergoalselectoritem1.a.i() && this.c.contains(pathfindergoalselectoritem1)) {
+                } else if (!pathfindergoalselectoritem1.a.i()) {
                     this.d.b();
-                    ((UnsafeList.Itr) iterator).valid = false; // CraftBukkit - mark iterator for reuse
                     return false;
                 }
             }
         }
+        // CraftBukkit end
 
         this.d.b();
         return true;
     }
 
     private boolean a(PathfinderGoalSelectorItem pathfindergoalselectoritem, PathfinderGoalSelectorItem pathfindergoalselectoritem1) {
-        return (pathfindergoalselectoritem.a.j() & pathfindergoalselectoritem1.a.j()) == 0;
+        return (pathfindergoalselectoritem.mutex & pathfindergoalselectoritem1.mutex) == 0; // CraftBukkit - use cached mutex bits
     }
 }
@@ -0,0 +1,19 @@
+package net.minecraft.server;
+
+class PathfinderGoalSelectorItem {
+
+    public PathfinderGoal a;
+    public int b;
+    final PathfinderGoalSelector c;
+    // CraftBukkit start
+    public boolean running; // Track running state here instead of searching the running list
+    public final int mutex; // Goals set their mutex bits when constructed, before they are added
+    // CraftBukkit end
+
+    public PathfinderGoalSelectorItem(PathfinderGoalSelector pathfindergoalselector, int i, PathfinderGoal pathfindergoal) {
+        this.c = pathfindergoalselector;
+        this.b = i;
+        this.a = pathfindergoal;
+        this.mutex = pathfindergoal.j(); // CraftBukkit
+    }
+}
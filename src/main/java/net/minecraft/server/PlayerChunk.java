@@ -134,6 +134,17 @@ class PlayerChunk {
         }
     }
 
+    // CraftBukkit start - Resend whole sections after a block change batch
+    public void flagSections(int mask) {
+        if (this.dirtyCount == 0) {
+            PlayerChunkMap.d(this.playerChunkMap).add(this);
+        }
+
+        this.f |= mask;
+        this.dirtyCount = 64;
+    }
+    // CraftBukkit end
+
     public void sendAll(Packet packet) {
         for (int i = 0; i < this.b.size(); ++i) {
             EntityPlayer entityplayer = (EntityPlayer) this.b.get(i);
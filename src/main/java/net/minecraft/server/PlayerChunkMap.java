@@ -115,6 +115,16 @@ public class PlayerChunkMap {
         }
     }
 
+    // CraftBukkit start
+    public void flagSectionsDirty(int chunkX, int chunkZ, int mask) {
+        PlayerChunk playerchunk = this.a(chunkX, chunkZ, false);
+
+        if (playerchunk != null) {
+            playerchunk.flagSections(mask);
+        }
+    }
+    // CraftBukkit end
+
     public void addPlayer(EntityPlayer entityplayer) {
         int i = (int) entityplayer.locX >> 4;
         int j = (int) entityplayer.locZ >> 4;
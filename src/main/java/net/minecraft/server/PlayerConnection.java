@@ -22,6 +22,7 @@ import java.io.UnsupportedEncodingException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.HashSet;
+import java.util.Set;
 
 import org.bukkit.craftbukkit.entity.CraftPlayer;
 import org.bukkit.craftbukkit.event.CraftEventFactory;
@@ -113,6 +114,11 @@ public class PlayerConnection implements PacketPlayInListener {
     // Store the last block right clicked and what type it was
     private Item lastMaterial;
 
+    // Whether the given position is in another block than the last PlayerMoveEvent location
+    private boolean hasChangedBlock(double x, double y, double z) {
+        return this.lastPosX == Double.MAX_VALUE || MathHelper.floor(x) != MathHelper.floor(this.lastPosX) || MathHelper.floor(y) != MathHelper.floor(this.lastPosY) || MathHelper.floor(z) != MathHelper.floor(this.lastPosZ);
+    }
+
     public CraftPlayer getPlayer() {
         return (this.player == null) ? null : (CraftPlayer) this.player.getBukkitEntity();
     }
@@ -201,36 +207,51 @@ public class PlayerConnection implements PacketPlayInListener {
             }
 
             // CraftBukkit start - fire PlayerMoveEvent
-            Player player = this.getPlayer();
-            Location from = new Location(player.getWorld(), lastPosX, lastPosY, lastPosZ, lastYaw, lastPitch); // Get the Players previous Event location.
-            Location to = player.getLocation().clone(); // Start off the To location as the Players current location.
+            // Work on the raw coordinates, Locations are only built when the event actually has listeners
+            double toX = this.player.locX;
+            double toY = this.player.locY;
+            double toZ = this.player.locZ;
+            float toYaw = this.player.yaw;
+            float toPitch = this.player.pitch;
 
             // If the packet contains movement information then we update the To location with the correct XYZ.
             if (packetplayinflying.hasPos && !(packetplayinflying.hasPos && packetplayinflying.y == -999.0D && packetplayinflying.stance == -999.0D)) {
-                to.setX(packetplayinflying.x);
-                to.setY(packetplayinflying.y);
-                to.setZ(packetplayinflying.z);
+                toX = packetplayinflying.x;
+                toY = packetplayinflying.y;
+                toZ = packetplayinflying.z;
             }
 
             // If the packet contains look information then we update the To location with the correct Yaw & Pitch.
             if (packetplayinflying.hasLook) {
-                to.setYaw(packetplayinflying.yaw);
-                to.setPitch(packetplayinflying.pitch);
+                toYaw = packetplayinflying.yaw;
+                toPitch = packetplayinflying.pitch;
             }
 
             // Prevent 40 event-calls for less than a single pixel of movement >.>
-            double delta = Math.pow(this.lastPosX - to.getX(), 2) + Math.pow(this.lastPosY - to.getY(), 2) + Math.pow(this.lastPosZ - to.getZ(), 2);
-            float deltaAngle = Math.abs(this.lastYaw - to.getYaw()) + Math.abs(this.lastPitch - to.getPitch());
-
-            if ((delta > 1f / 256 || deltaAngle > 10f) && (this.checkMovement && !this.player.dead)) {
-                this.lastPosX = to.getX();
-                this.lastPosY = to.getY();
-                this.lastPosZ = to.getZ();
-                this.lastYaw = to.getYaw();
-                this.lastPitch = to.getPitch();
-
-                // Skip the first time we do this
-                if (from.getX() != Double.MAX_VALUE) {
+            double dx = this.lastPosX - toX;
+            double dy = this.lastPosY - toY;
+            double dz = this.lastPosZ - toZ;
+            double delta = dx * dx + dy * dy + dz * dz;
+            float deltaAngle = Math.abs(this.lastYaw - toYaw) + Math.abs(this.lastPitch - toPitch);
+
+            if ((delta > 1f / 256 || deltaAngle > 10f) && (this.checkMovement && !this.player.dead) && (!this.server.blockMoveEvents || this.hasChangedBlock(toX, toY, toZ))) {
+                double fromX = this.lastPosX;
+                double fromY = this.lastPosY;
+                double fromZ = this.lastPosZ;
+                float fromYaw = this.lastYaw;
+                float fromPitch = this.lastPitch;
+
+                this.lastPosX = toX;
+                this.lastPosY = toY;
+                this.lastPosZ = toZ;
+                this.lastYaw = toYaw;
+                this.lastPitch = toPitch;
+
+                // Skip the first time we do this, and skip building the event when nobody listens
+                if (fromX != Double.MAX_VALUE && PlayerMoveEvent.getHandlerList().getRegisteredListeners().length != 0) {
+                    Player player = this.getPlayer();
+                    Location from = new Location(player.getWorld(), fromX, fromY, fromZ, fromYaw, fromPitch); // Get the Players previous Event location.
+                    Location to = new Location(player.getWorld(), toX, toY, toZ, toYaw, toPitch);
                     PlayerMoveEvent event = new PlayerMoveEvent(player, from, to);
                     this.server.getPluginManager().callEvent(event);
 
@@ -895,15 +916,7 @@ public class PlayerConnection implements PacketPlayInListener {
 
                         String message = String.format(queueEvent.getFormat(), queueEvent.getPlayer().getDisplayName(), queueEvent.getMessage());
                         PlayerConnection.this.minecraftServer.console.sendMessage(message);
-                        if (((LazyPlayerSet) queueEvent.getRecipients()).isLazy()) {
-                            for (Object player : PlayerConnection.this.minecraftServer.getPlayerList().players) {
-                                ((EntityPlayer) player).sendMessage(CraftChatMessage.fromString(message));
-                            }
-                        } else {
-                            for (Player player : queueEvent.getRecipients()) {
-                                player.sendMessage(message);
-                            }
-                        }
+                        PlayerConnection.this.sendChat(message, queueEvent.getRecipients());
                         return null;
                     }};
                 if (async) {
@@ -925,14 +938,29 @@ public class PlayerConnection implements PacketPlayInListener {
 
                 s = String.format(event.getFormat(), event.getPlayer().getDisplayName(), event.getMessage());
                 minecraftServer.console.sendMessage(s);
-                if (((LazyPlayerSet) event.getRecipients()).isLazy()) {
-                    for (Object recipient : minecraftServer.getPlayerList().players) {
-                        ((EntityPlayer) recipient).sendMessage(CraftChatMessage.fromString(s));
-                    }
+                this.sendChat(s, event.getRecipients());
+            }
+        }
+    }
+
+    private void sendChat(String message, Set<Player> recipients) {
+        // Parse and build the packets once, they serialize themselves once no matter how many players receive them
+        IChatBaseComponent[] components = CraftChatMessage.fromString(message);
+        PacketPlayOutChat[] packets = new PacketPlayOutChat[components.length];
+        for (int i = 0; i < components.length; i++) {
+            packets[i] = new PacketPlayOutChat(components[i]);
+        }
+
+        if (((LazyPlayerSet) recipients).isLazy()) {
+            for (PacketPlayOutChat packet : packets) {
+                this.minecraftServer.getPlayerList().sendAll(packet);
+            }
+        } else {
+            for (Player recipient : recipients) {
+                if (recipient instanceof CraftPlayer) {
+                    ((CraftPlayer) recipient).sendChat(packets);
                 } else {
-                    for (Player recipient : event.getRecipients()) {
-                        recipient.sendMessage(s);
-                    }
+                    recipient.sendMessage(message);
                 }
             }
         }
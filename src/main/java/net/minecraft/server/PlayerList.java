@@ -244,6 +244,10 @@ public abstract class PlayerList {
         cserver.detectListNameConflict(entityplayer); // CraftBukkit
         // this.sendAll(new PacketPlayOutPlayerInfo(entityplayer.getName(), true, 1000)); // CraftBukkit - replaced with loop below
         this.players.add(entityplayer);
+        // CraftBukkit start
+        this.cserver.getOnlinePlayerIndex().add(entityplayer.getBukkitEntity());
+        this.cserver.getProfileService().getCache().put(entityplayer.getProfile());
+        // CraftBukkit end
         WorldServer worldserver = this.server.getWorldServer(entityplayer.dimension);
 
         // CraftBukkit start
@@ -319,6 +323,7 @@ public abstract class PlayerList {
         worldserver.kill(entityplayer);
         worldserver.getPlayerChunkMap().removePlayer(entityplayer);
         this.players.remove(entityplayer);
+        this.cserver.getOnlinePlayerIndex().remove(entityplayer.getBukkitEntity()); // CraftBukkit
         this.n.remove(entityplayer.getUniqueID());
         ChunkIOExecutor.adjustPoolSize(this.getPlayerCount()); // CraftBukkit
 
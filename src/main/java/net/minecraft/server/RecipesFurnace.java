@@ -1,16 +1,21 @@
 package net.minecraft.server;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Map.Entry;
+
+import org.bukkit.craftbukkit.inventory.ItemDataIndex; // CraftBukkit
 
 public class RecipesFurnace {
 
     private static final RecipesFurnace a = new RecipesFurnace();
     public Map recipes = new HashMap(); // CraftBukkit - private -> public
     private Map c = new HashMap();
-    public Map customRecipes = new HashMap(); // CraftBukkit - add field
+    // CraftBukkit start - add fields
+    public Map customRecipes = new HashMap();
+    private final ItemDataIndex customIndex = new ItemDataIndex();
+    private final ItemDataIndex vanillaIndex = new ItemDataIndex();
+    private final ItemDataIndex experienceIndex = new ItemDataIndex();
+    // CraftBukkit end
 
     public static RecipesFurnace getInstance() {
         return a;
@@ -61,38 +66,32 @@ public class RecipesFurnace {
     public void a(ItemStack itemstack, ItemStack itemstack1, float f) {
         this.recipes.put(itemstack, itemstack1);
         this.c.put(itemstack1, Float.valueOf(f));
+        this.invalidateIndex(); // CraftBukkit
     }
 
-    // CraftBukkit start - add method
+    // CraftBukkit start - add methods
     public void registerRecipe(ItemStack itemstack, ItemStack itemstack1) {
         this.customRecipes.put(itemstack, itemstack1);
+        this.invalidateIndex();
+    }
+
+    public void invalidateIndex() {
+        this.customIndex.invalidate();
+        this.vanillaIndex.invalidate();
+        this.experienceIndex.invalidate();
     }
     // CraftBukkit end
 
     public ItemStack getResult(ItemStack itemstack) {
-        // CraftBukkit start - initialize to customRecipes
-        boolean vanilla = false;
-        Iterator iterator = this.customRecipes.entrySet().iterator();
-        // CraftBukkit end
-
-        Entry entry;
-
-        do {
-            if (!iterator.hasNext()) {
-                // CraftBukkit start - fall back to vanilla recipes
-                if (!vanilla && recipes.size() != 0) {
-                    iterator = this.recipes.entrySet().iterator();
-                    vanilla = true;
-                } else {
-                    return null;
-                }
-                // CraftBukkit end
-            }
+        // CraftBukkit start - look up custom recipes first, then vanilla ones, by item and data
+        ItemStack result = (ItemStack) this.customIndex.get(this.customRecipes, itemstack);
 
-            entry = (Entry) iterator.next();
-        } while (!this.a(itemstack, (ItemStack) entry.getKey()));
+        if (result == null) {
+            result = (ItemStack) this.vanillaIndex.get(this.recipes, itemstack);
+        }
 
-        return (ItemStack) entry.getValue();
+        return result;
+        // CraftBukkit end
     }
 
     private boolean a(ItemStack itemstack, ItemStack itemstack1) {
@@ -104,18 +103,10 @@ public class RecipesFurnace {
     }
 
     public float b(ItemStack itemstack) {
-        Iterator iterator = this.c.entrySet().iterator();
+        // CraftBukkit start - look up by item and data
+        Float experience = (Float) this.experienceIndex.get(this.c, itemstack);
 
-        Entry entry;
-
-        do {
-            if (!iterator.hasNext()) {
-                return 0.0F;
-            }
-
-            entry = (Entry) iterator.next();
-        } while (!this.a(itemstack, (ItemStack) entry.getKey()));
-
-        return ((Float) entry.getValue()).floatValue();
+        return experience != null ? experience.floatValue() : 0.0F;
+        // CraftBukkit end
     }
 }
@@ -7,9 +7,11 @@ import org.bukkit.craftbukkit.inventory.CraftShapedRecipe;
 
 public class ShapedRecipes implements IRecipe {
 
-    private int width;
-    private int height;
-    private ItemStack[] items;
+    // CraftBukkit start - private -> public
+    public int width;
+    public int height;
+    public ItemStack[] items;
+    // CraftBukkit end
     private ItemStack result;
     private boolean e;
 
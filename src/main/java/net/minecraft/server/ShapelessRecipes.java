@@ -12,7 +12,7 @@ import org.bukkit.craftbukkit.inventory.CraftShapelessRecipe;
 public class ShapelessRecipes implements IRecipe {
 
     private final ItemStack result;
-    private final List ingredients;
+    public final List ingredients; // CraftBukkit - private -> public
 
     public ShapelessRecipes(ItemStack itemstack, List list) {
         this.result = itemstack;
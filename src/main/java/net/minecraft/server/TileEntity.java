@@ -21,6 +21,10 @@ public class TileEntity {
     protected boolean f;
     public int g = -1;
     public Block h;
+    // CraftBukkit start - position in World.tileEntityList
+    public int tickIndex = -1;
+    public long tickChunkKey;
+    // CraftBukkit end
 
     public TileEntity() {}
 
@@ -5,6 +5,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.TreeMap;
 
+// CraftBukkit start
+import org.bukkit.craftbukkit.util.LongHash;
+import org.bukkit.craftbukkit.util.LongObjectHashMap;
+// CraftBukkit end
+
 public class Village {
 
     private World world;
@@ -19,6 +24,7 @@ public class Village {
     private TreeMap playerStandings = new TreeMap();
     private List aggressors = new ArrayList();
     private int ironGolemCount;
+    private final LongObjectHashMap<List<VillageDoor>> doorColumns = new LongObjectHashMap<List<VillageDoor>>(); // CraftBukkit - doors by x and z
 
     public Village() {}
 
@@ -52,7 +58,7 @@ public class Village {
 
                 entityirongolem.setPosition(vec3d.a, vec3d.b, vec3d.c);
                 this.world.addEntity(entityirongolem, org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason.VILLAGE_DEFENSE); // CraftBukkit
-                ++this.ironGolemCount;
+                // ++this.ironGolemCount; // CraftBukkit - Counted as it joins the world
             }
         }
     }
@@ -93,20 +99,108 @@ public class Village {
     }
 
     private void countPopulation() {
-        List list = this.world.a(EntityIronGolem.class, AxisAlignedBB.a((double) (this.center.x - this.size), (double) (this.center.y - 4), (double) (this.center.z - this.size), (double) (this.center.x + this.size), (double) (this.center.y + 4), (double) (this.center.z + this.size)));
-
-        this.ironGolemCount = list.size();
+        this.ironGolemCount = this.countEntities(EntityIronGolem.class); // CraftBukkit
     }
 
     private void k() {
-        List list = this.world.a(EntityVillager.class, AxisAlignedBB.a((double) (this.center.x - this.size), (double) (this.center.y - 4), (double) (this.center.z - this.size), (double) (this.center.x + this.size), (double) (this.center.y + 4), (double) (this.center.z + this.size)));
-
-        this.population = list.size();
+        this.population = this.countEntities(EntityVillager.class); // CraftBukkit
         if (this.population == 0) {
             this.playerStandings.clear();
         }
     }
 
+    // CraftBukkit start - Count the entities in place instead of collecting them into a list
+    // Villagers and golems joining or leaving the world are counted as they do, this recount catches those that walked in or out
+    private int countEntities(Class oclass) {
+        AxisAlignedBB axisalignedbb = this.getPopulationBounds();
+        int minX = MathHelper.floor((axisalignedbb.a - 2.0D) / 16.0D);
+        int maxX = MathHelper.floor((axisalignedbb.d + 2.0D) / 16.0D);
+        int minZ = MathHelper.floor((axisalignedbb.c - 2.0D) / 16.0D);
+        int maxZ = MathHelper.floor((axisalignedbb.f + 2.0D) / 16.0D);
+        int minY = MathHelper.a(MathHelper.floor((axisalignedbb.b - 2.0D) / 16.0D), 0, 15);
+        int maxY = MathHelper.a(MathHelper.floor((axisalignedbb.e + 2.0D) / 16.0D), 0, 15);
+        int count = 0;
+
+        for (int chunkX = minX; chunkX <= maxX; ++chunkX) {
+            for (int chunkZ = minZ; chunkZ <= maxZ; ++chunkZ) {
+                if (!this.world.isChunkLoaded(chunkX, chunkZ)) {
+                    continue;
+                }
+
+                Chunk chunk = this.world.getChunkAt(chunkX, chunkZ);
+
+                if (!hasEntities(chunk, oclass)) {
+                    continue;
+                }
+
+                for (int slice = minY; slice <= maxY; ++slice) {
+                    List entities = chunk.entitySlices[slice];
+
+                    for (int i = 0; i < entities.size(); ++i) {
+                        Entity entity = (Entity) entities.get(i);
+
+                        if (oclass.isInstance(entity) && entity.boundingBox.b(axisalignedbb)) {
+                            ++count;
+                        }
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private static boolean hasEntities(Chunk chunk, Class oclass) {
+        for (java.util.Map.Entry<Class<?>, int[]> entry : chunk.entityTypeCounts.entrySet()) {
+            if (entry.getValue()[0] > 0 && oclass.isAssignableFrom(entry.getKey())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private AxisAlignedBB getPopulationBounds() {
+        return AxisAlignedBB.a((double) (this.center.x - this.size), (double) (this.center.y - 4), (double) (this.center.z - this.size), (double) (this.center.x + this.size), (double) (this.center.y + 4), (double) (this.center.z + this.size));
+    }
+
+    public void countEntity(Entity entity, int delta) {
+        if (!entity.boundingBox.b(this.getPopulationBounds())) {
+            return;
+        }
+
+        if (entity instanceof EntityVillager) {
+            this.population = Math.max(0, this.population + delta);
+        } else if (entity instanceof EntityIronGolem) {
+            this.ironGolemCount = Math.max(0, this.ironGolemCount + delta);
+        }
+    }
+
+    private void indexDoor(VillageDoor villagedoor) {
+        long key = LongHash.toLong(villagedoor.locX, villagedoor.locZ);
+        List<VillageDoor> column = this.doorColumns.get(key);
+
+        if (column == null) {
+            column = new ArrayList<VillageDoor>(2);
+            this.doorColumns.put(key, column);
+        }
+
+        column.add(villagedoor);
+    }
+
+    private void unindexDoor(VillageDoor villagedoor) {
+        long key = LongHash.toLong(villagedoor.locX, villagedoor.locZ);
+        List<VillageDoor> column = this.doorColumns.get(key);
+
+        if (column != null) {
+            column.remove(villagedoor);
+            if (column.isEmpty()) {
+                this.doorColumns.remove(key);
+            }
+        }
+    }
+    // CraftBukkit end
+
     public ChunkCoordinates getCenter() {
         return this.center;
     }
@@ -181,24 +275,27 @@ public class Village {
         if (this.center.e(i, j, k) > (float) (this.size * this.size)) {
             return null;
         } else {
-            Iterator iterator = this.doors.iterator();
+            // CraftBukkit start - Only look at the doors in this column
+            List<VillageDoor> column = this.doorColumns.get(LongHash.toLong(i, k));
 
-            VillageDoor villagedoor;
+            if (column != null) {
+                for (int l = 0; l < column.size(); ++l) {
+                    VillageDoor villagedoor = column.get(l);
 
-            do {
-                if (!iterator.hasNext()) {
-                    return null;
+                    if (Math.abs(villagedoor.locY - j) <= 1) {
+                        return villagedoor;
+                    }
                 }
+            }
 
-                villagedoor = (VillageDoor) iterator.next();
-            } while (villagedoor.locX != i || villagedoor.locZ != k || Math.abs(villagedoor.locY - j) > 1);
-
-            return villagedoor;
+            return null;
+            // CraftBukkit end
         }
     }
 
     public void addDoor(VillageDoor villagedoor) {
         this.doors.add(villagedoor);
+        this.indexDoor(villagedoor); // CraftBukkit
         this.c.x += villagedoor.locX;
         this.c.y += villagedoor.locY;
         this.c.z += villagedoor.locZ;
@@ -300,6 +397,7 @@ public class Village {
                 flag = true;
                 villagedoor.removed = true;
                 iterator.remove();
+                this.unindexDoor(villagedoor); // CraftBukkit
             }
         }
 
@@ -330,6 +428,12 @@ public class Village {
 
             this.size = Math.max(32, (int) Math.sqrt((double) j) + 1);
         }
+
+        // CraftBukkit start - Refile the village under the chunks it now reaches
+        if (this.world != null) {
+            this.world.villages.index(this);
+        }
+        // CraftBukkit end
     }
 
     public int a(String s) {
@@ -370,6 +474,7 @@ public class Village {
             VillageDoor villagedoor = new VillageDoor(nbttagcompound1.getInt("X"), nbttagcompound1.getInt("Y"), nbttagcompound1.getInt("Z"), nbttagcompound1.getInt("IDX"), nbttagcompound1.getInt("IDZ"), nbttagcompound1.getInt("TS"));
 
             this.doors.add(villagedoor);
+            this.indexDoor(villagedoor); // CraftBukkit
         }
 
         NBTTagList nbttaglist1 = nbttagcompound.getList("Players", 10);
@@ -3,7 +3,6 @@ package net.minecraft.server;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
@@ -14,8 +13,13 @@ import java.util.concurrent.Callable;
 // CraftBukkit start
 import org.bukkit.Bukkit;
 import org.bukkit.block.BlockState;
+import org.bukkit.craftbukkit.util.ActivationRange;
+import org.bukkit.craftbukkit.util.CollisionShapeCache;
 import org.bukkit.craftbukkit.util.CraftMagicNumbers;
+import org.bukkit.craftbukkit.util.EntityMergeService;
+import org.bukkit.craftbukkit.util.EntityTickList;
 import org.bukkit.craftbukkit.util.LongHashSet;
+import org.bukkit.craftbukkit.util.TileEntityRegistry;
 import org.bukkit.generator.ChunkGenerator;
 import org.bukkit.craftbukkit.CraftServer;
 import org.bukkit.craftbukkit.CraftWorld;
@@ -30,9 +34,9 @@ import org.bukkit.event.weather.ThunderChangeEvent;
 public abstract class World implements IBlockAccess {
 
     public boolean d;
-    public List entityList = new ArrayList();
+    public List entityList = new EntityTickList(); // CraftBukkit - ArrayList -> EntityTickList
     protected List f = new ArrayList();
-    public Set tileEntityList = new HashSet(); // CraftBukkit - ArrayList -> HashSet
+    public Set tileEntityList = new TileEntityRegistry(); // CraftBukkit - ArrayList -> TileEntityRegistry
     private List a = new ArrayList();
     private List b = new ArrayList();
     public List players = new ArrayList();
@@ -73,7 +77,9 @@ public abstract class World implements IBlockAccess {
     public long ticksPerAnimalSpawns;
     public long ticksPerMonsterSpawns;
     public boolean populating;
-    private int tickPosition;
+    public final CollisionShapeCache collisionShapeCache = new CollisionShapeCache(this);
+    public final EntityMergeService entityMergeService = new EntityMergeService(this);
+    public final ActivationRange activationRange = new ActivationRange(this);
     // CraftBukkit end
     private ArrayList L;
     private boolean M;
@@ -1007,6 +1013,7 @@ public abstract class World implements IBlockAccess {
         }
 
         entity.valid = true; // CraftBukkit
+        this.villages.countEntity(entity, 1); // CraftBukkit
     }
 
     protected void b(Entity entity) {
@@ -1015,6 +1022,7 @@ public abstract class World implements IBlockAccess {
         }
 
         entity.valid = false; // CraftBukkit
+        this.villages.countEntity(entity, -1); // CraftBukkit
     }
 
     public void kill(Entity entity) {
@@ -1047,15 +1055,7 @@ public abstract class World implements IBlockAccess {
             this.getChunkAt(i, j).b(entity);
         }
 
-        // CraftBukkit start - Decrement loop variable field if we've already ticked this entity
-        int index = this.entityList.indexOf(entity);
-        if (index != -1) {
-            if (index <= this.tickPosition) {
-                this.tickPosition--;
-            }
-            this.entityList.remove(index);
-        }
-        // CraftBukkit end
+        this.entityList.remove(entity); // CraftBukkit - The list keeps its tick position valid
 
         this.b(entity);
     }
@@ -1077,20 +1077,24 @@ public abstract class World implements IBlockAccess {
             for (int l1 = i1; l1 < j1; ++l1) {
                 if (this.isLoaded(k1, 64, l1)) {
                     for (int i2 = k - 1; i2 < l; ++i2) {
-                        Block block;
-
+                        // CraftBukkit start - Use the cached collision shapes
                         if (k1 >= -30000000 && k1 < 30000000 && l1 >= -30000000 && l1 < 30000000) {
-                            block = this.getType(k1, i2, l1);
+                            this.collisionShapeCache.collect(k1, i2, l1, axisalignedbb, this.L, entity);
                         } else {
-                            block = Blocks.STONE;
+                            Blocks.STONE.a(this, k1, i2, l1, axisalignedbb, this.L, entity);
                         }
-
-                        block.a(this, k1, i2, l1, axisalignedbb, this.L, entity);
+                        // CraftBukkit end
                     }
                 }
             }
         }
 
+        // CraftBukkit start - Nothing to collide with when no loaded entity has a collision box and the entity does not collide with others
+        if (!((EntityTickList) this.entityList).hasCollidableEntities() && !EntityTickList.collidesWithEntities(entity)) {
+            return this.L;
+        }
+        // CraftBukkit end
+
         double d0 = 0.25D;
         List list = this.getEntities(entity, axisalignedbb.grow(d0, d0, d0));
 
@@ -1123,15 +1127,13 @@ public abstract class World implements IBlockAccess {
             for (int l1 = i1; l1 < j1; ++l1) {
                 if (this.isLoaded(k1, 64, l1)) {
                     for (int i2 = k - 1; i2 < l; ++i2) {
-                        Block block;
-
+                        // CraftBukkit start - Use the cached collision shapes
                         if (k1 >= -30000000 && k1 < 30000000 && l1 >= -30000000 && l1 < 30000000) {
-                            block = this.getType(k1, i2, l1);
+                            this.collisionShapeCache.collect(k1, i2, l1, axisalignedbb, this.L, (Entity) null);
                         } else {
-                            block = Blocks.BEDROCK;
+                            Blocks.BEDROCK.a(this, k1, i2, l1, axisalignedbb, this.L, (Entity) null);
                         }
-
-                        block.a(this, k1, i2, l1, axisalignedbb, this.L, (Entity) null);
+                        // CraftBukkit end
                     }
                 }
             }
@@ -1264,9 +1266,11 @@ public abstract class World implements IBlockAccess {
         this.f.clear();
         this.methodProfiler.c("regular");
 
-        // CraftBukkit start - Use field for loop variable
-        for (this.tickPosition = 0; this.tickPosition < this.entityList.size(); ++this.tickPosition) {
-            entity = (Entity) this.entityList.get(this.tickPosition);
+        // CraftBukkit start - Use the list's tick position for loop variable
+        this.activationRange.activateEntities();
+        EntityTickList entityTickList = (EntityTickList) this.entityList;
+        for (entityTickList.tickPosition = 0; entityTickList.tickPosition < entityTickList.size(); ++entityTickList.tickPosition) {
+            entity = entityTickList.get(entityTickList.tickPosition);
 
             // Don't tick entities in chunks queued for unload
             ChunkProviderServer chunkProviderServer = ((WorldServer) this).chunkProviderServer;
@@ -1305,20 +1309,28 @@ public abstract class World implements IBlockAccess {
                     this.getChunkAt(j, k).b(entity);
                 }
 
-                this.entityList.remove(this.tickPosition--); // CraftBukkit - Use field for loop variable
+                this.entityList.remove(entity); // CraftBukkit - Removes in place and steps the tick position back
                 this.b(entity);
             }
 
             this.methodProfiler.b();
         }
 
+        // CraftBukkit start
+        entityTickList.tickPosition = -1;
+        this.methodProfiler.c("merge");
+        this.entityMergeService.run();
+        // CraftBukkit end
+
         this.methodProfiler.c("blockEntities");
         this.M = true;
-        Iterator iterator = this.tileEntityList.iterator();
+        // CraftBukkit start - Only visit the tile entities that tick, timing them per type when profiling
+        TileEntityRegistry tileEntityRegistry = (TileEntityRegistry) this.tileEntityList;
+        boolean timings = ((org.bukkit.plugin.SimplePluginManager) this.getServer().getPluginManager()).useTimings();
 
-        while (iterator.hasNext()) {
-            TileEntity tileentity = (TileEntity) iterator.next();
-            // CraftBukkit start - Don't tick entities in chunks queued for unload
+        for (tileEntityRegistry.tickPosition = 0; tileEntityRegistry.tickPosition < tileEntityRegistry.tickingSize(); ++tileEntityRegistry.tickPosition) {
+            TileEntity tileentity = tileEntityRegistry.getTicking(tileEntityRegistry.tickPosition);
+            // Don't tick entities in chunks queued for unload
             ChunkProviderServer chunkProviderServer = ((WorldServer) this).chunkProviderServer;
             if (chunkProviderServer.unloadQueue.contains(tileentity.x >> 4, tileentity.z >> 4)) {
                 continue;
@@ -1327,7 +1339,15 @@ public abstract class World implements IBlockAccess {
 
             if (!tileentity.r() && tileentity.o() && this.isLoaded(tileentity.x, tileentity.y, tileentity.z)) {
                 try {
-                    tileentity.h();
+                    // CraftBukkit start
+                    if (timings) {
+                        long start = System.nanoTime();
+                        tileentity.h();
+                        tileEntityRegistry.recordTickTime(tileentity.getClass(), System.nanoTime() - start);
+                    } else {
+                        tileentity.h();
+                    }
+                    // CraftBukkit end
                 } catch (Throwable throwable2) {
                     crashreport = CrashReport.a(throwable2, "Ticking block entity");
                     crashreportsystemdetails = crashreport.a("Block entity being ticked");
@@ -1337,7 +1357,7 @@ public abstract class World implements IBlockAccess {
             }
 
             if (tileentity.r()) {
-                iterator.remove();
+                tileEntityRegistry.remove(tileentity); // CraftBukkit - Steps the tick position back
                 if (this.isChunkLoaded(tileentity.x >> 4, tileentity.z >> 4)) {
                     Chunk chunk = this.getChunkAt(tileentity.x >> 4, tileentity.z >> 4);
 
@@ -1348,6 +1368,8 @@ public abstract class World implements IBlockAccess {
             }
         }
 
+        tileEntityRegistry.tickPosition = -1; // CraftBukkit
+
         this.M = false;
         if (!this.b.isEmpty()) {
             this.tileEntityList.removeAll(this.b);
@@ -1415,6 +1437,11 @@ public abstract class World implements IBlockAccess {
             entity.lastPitch = entity.pitch;
             if (flag && entity.ag) {
                 ++entity.ticksLived;
+                // CraftBukkit start - Entities out of activation range only tick now and then
+                if (!this.activationRange.checkIfActive(entity)) {
+                    entity.inactiveTick();
+                } else
+                // CraftBukkit end
                 if (entity.vehicle != null) {
                     entity.aa();
                 } else {
@@ -1821,6 +1848,11 @@ public abstract class World implements IBlockAccess {
 
                 this.a.add(tileentity);
             } else {
+                // CraftBukkit start - The registry files the tile entity under the chunk of its position
+                tileentity.x = i;
+                tileentity.y = j;
+                tileentity.z = k;
+                // CraftBukkit end
                 this.tileEntityList.add(tileentity);
                 Chunk chunk = this.getChunkAt(i >> 4, k >> 4);
 
@@ -1837,6 +1869,16 @@ public abstract class World implements IBlockAccess {
         if (tileentity != null && this.M) {
             tileentity.s();
             this.a.remove(tileentity);
+            // CraftBukkit start - The tile entity pass only removes ticking tile entities, drop the others now
+            if (!TileEntityRegistry.isTicking(tileentity.getClass())) {
+                this.tileEntityList.remove(tileentity);
+                Chunk chunk = this.getChunkAt(i >> 4, k >> 4);
+
+                if (chunk != null) {
+                    chunk.f(i & 15, j, k & 15);
+                }
+            }
+            // CraftBukkit end
         } else {
             if (tileentity != null) {
                 this.a.remove(tileentity);
@@ -29,6 +29,15 @@ public class WorldMap extends PersistentBase {
     public final CraftMapView mapView;
     private CraftServer server;
     private UUID uniqueId = null;
+
+    // Region of colors changed since the map renderer last copied it, empty when dirtyMinX > dirtyMaxX
+    public int dirtyMinX = 0;
+    public int dirtyMinY = 0;
+    public int dirtyMaxX = 127;
+    public int dirtyMaxY = 127;
+
+    // Owners of the player decorations in g, so cursors can be filtered without looking players up by name
+    public final Map<String, UUID> decorationPlayers = new HashMap<String, UUID>();
     // CraftBukkit end
 
     public WorldMap(String s) {
@@ -101,6 +110,13 @@ public class WorldMap extends PersistentBase {
                 }
             }
         }
+
+        // CraftBukkit start
+        this.dirtyMinX = 0;
+        this.dirtyMinY = 0;
+        this.dirtyMaxX = 127;
+        this.dirtyMaxY = 127;
+        // CraftBukkit end
     }
 
     public void b(NBTTagCompound nbttagcompound) {
@@ -142,6 +158,7 @@ public class WorldMap extends PersistentBase {
 
         if (!entityhuman.inventory.c(itemstack)) {
             this.g.remove(entityhuman.getName());
+            this.decorationPlayers.remove(entityhuman.getName()); // CraftBukkit
         }
 
         for (int i = 0; i < this.f.size(); ++i) {
@@ -150,6 +167,11 @@ public class WorldMap extends PersistentBase {
             if (!worldmaphumantracker1.trackee.dead && (worldmaphumantracker1.trackee.inventory.c(itemstack) || itemstack.A())) {
                 if (!itemstack.A() && worldmaphumantracker1.trackee.dimension == this.map) {
                     this.a(0, worldmaphumantracker1.trackee.world, worldmaphumantracker1.trackee.getName(), worldmaphumantracker1.trackee.locX, worldmaphumantracker1.trackee.locZ, (double) worldmaphumantracker1.trackee.yaw);
+                    // CraftBukkit start - Remember the owner while the decoration is shown
+                    if (this.g.containsKey(worldmaphumantracker1.trackee.getName())) {
+                        this.decorationPlayers.put(worldmaphumantracker1.trackee.getName(), worldmaphumantracker1.trackee.getUniqueID());
+                    }
+                    // CraftBukkit end
                 }
             } else {
                 this.i.remove(worldmaphumantracker1.trackee);
@@ -182,6 +204,7 @@ public class WorldMap extends PersistentBase {
         } else {
             if (Math.abs(f) >= 320.0F || Math.abs(f1) >= 320.0F) {
                 this.g.remove(s);
+                this.decorationPlayers.remove(s); // CraftBukkit
                 return;
             }
 
@@ -216,6 +239,28 @@ public class WorldMap extends PersistentBase {
     public void flagDirty(int i, int j, int k) {
         super.c();
 
+        // CraftBukkit start - Track the changed region for the map renderer, move tracker update to its own method
+        if (this.dirtyMinX > this.dirtyMaxX) {
+            this.dirtyMinX = this.dirtyMaxX = i;
+            this.dirtyMinY = j;
+            this.dirtyMaxY = k;
+        } else {
+            this.dirtyMinX = Math.min(this.dirtyMinX, i);
+            this.dirtyMaxX = Math.max(this.dirtyMaxX, i);
+            this.dirtyMinY = Math.min(this.dirtyMinY, j);
+            this.dirtyMaxY = Math.max(this.dirtyMaxY, k);
+        }
+
+        this.flagTrackersDirty(i, j, k);
+    }
+
+    public void clearColorsDirty() {
+        this.dirtyMinX = 128;
+        this.dirtyMaxX = -1;
+    }
+
+    public void flagTrackersDirty(int i, int j, int k) {
+        // CraftBukkit end
         for (int l = 0; l < this.f.size(); ++l) {
             WorldMapHumanTracker worldmaphumantracker = (WorldMapHumanTracker) this.f.get(l);
 
@@ -15,6 +15,7 @@ import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.craftbukkit.block.CraftBlock;
+import org.bukkit.craftbukkit.util.SnapshotLease;
 import org.bukkit.entity.Entity;
 import org.bukkit.ChunkSnapshot;
 
@@ -24,7 +25,7 @@ public class CraftChunk implements Chunk {
     private final int x;
     private final int z;
     private static final byte[] emptyData = new byte[2048];
-    private static final short[] emptyBlockIDs = new short[4096];
+    private static final byte[] emptyBlockIDs = new byte[4096];
     private static final byte[] emptySkyLight = new byte[2048];
 
     public CraftChunk(net.minecraft.server.Chunk chunk) {
@@ -151,11 +152,13 @@ public class CraftChunk implements Chunk {
         net.minecraft.server.Chunk chunk = getHandle();
 
         ChunkSection[] cs = chunk.i(); /* Get sections */
-        short[][] sectionBlockIDs = new short[cs.length][];
+        byte[][] sectionBlockIDs = new byte[cs.length][];
+        byte[][] sectionExtBlockIDs = new byte[cs.length][];
         byte[][] sectionBlockData = new byte[cs.length][];
         byte[][] sectionSkyLights = new byte[cs.length][];
         byte[][] sectionEmitLights = new byte[cs.length][];
         boolean[] sectionEmpty = new boolean[cs.length];
+        SnapshotLease[] sectionLeases = new SnapshotLease[cs.length];
 
         for (int i = 0; i < cs.length; i++) {
             if (cs[i] == null) { /* Section is empty? */
@@ -165,42 +168,20 @@ public class CraftChunk implements Chunk {
                 sectionEmitLights[i] = emptyData;
                 sectionEmpty[i] = true;
             } else { /* Not empty */
-                short[] blockids = new short[4096];
-                byte[] baseids = cs[i].getIdArray();
-
-                /* Copy base IDs */
-                for (int j = 0; j < 4096; j++) {
-                    blockids[j] = (short) (baseids[j] & 0xFF);
-                }
+                /* Share the section arrays, the section copies them before it changes them */
+                sectionLeases[i] = cs[i].shareWithSnapshot();
 
+                sectionBlockIDs[i] = cs[i].getIdArray();
                 if (cs[i].getExtendedIdArray() != null) { /* If we've got extended IDs */
-                    byte[] extids = cs[i].getExtendedIdArray().a;
-
-                    for (int j = 0; j < 2048; j++) {
-                        short b = (short) (extids[j] & 0xFF);
-
-                        if (b == 0) {
-                            continue;
-                        }
-
-                        blockids[j<<1] |= (b & 0x0F) << 8;
-                        blockids[(j<<1)+1] |= (b & 0xF0) << 4;
-                    }
+                    sectionExtBlockIDs[i] = cs[i].getExtendedIdArray().a;
                 }
-
-                sectionBlockIDs[i] = blockids;
-
-                /* Get block data nibbles */
-                sectionBlockData[i] = new byte[2048];
-                System.arraycopy(cs[i].getDataArray().a, 0, sectionBlockData[i], 0, 2048);
+                sectionBlockData[i] = cs[i].getDataArray().a;
                 if (cs[i].getSkyLightArray() == null) {
                     sectionSkyLights[i] = emptyData;
                 } else {
-                    sectionSkyLights[i] = new byte[2048];
-                    System.arraycopy(cs[i].getSkyLightArray().a, 0, sectionSkyLights[i], 0, 2048);
+                    sectionSkyLights[i] = cs[i].getSkyLightArray().a;
                 }
-                sectionEmitLights[i] = new byte[2048];
-                System.arraycopy(cs[i].getEmittedLightArray().a, 0, sectionEmitLights[i], 0, 2048);
+                sectionEmitLights[i] = cs[i].getEmittedLightArray().a;
             }
         }
 
@@ -243,7 +224,7 @@ public class CraftChunk implements Chunk {
         }
 
         World world = getWorld();
-        return new CraftChunkSnapshot(getX(), getZ(), world.getName(), world.getFullTime(), sectionBlockIDs, sectionBlockData, sectionSkyLights, sectionEmitLights, sectionEmpty, hmap, biome, biomeTemp, biomeRain);
+        return new CraftChunkSnapshot(getX(), getZ(), world.getName(), world.getFullTime(), sectionBlockIDs, sectionExtBlockIDs, sectionBlockData, sectionSkyLights, sectionEmitLights, sectionEmpty, sectionLeases, hmap, biome, biomeTemp, biomeRain);
     }
 
     public static ChunkSnapshot getEmptyChunkSnapshot(int x, int z, CraftWorld world, boolean includeBiome, boolean includeBiomeTempRain) {
@@ -280,7 +261,7 @@ public class CraftChunk implements Chunk {
 
         /* Fill with empty data */
         int hSection = world.getMaxHeight() >> 4;
-        short[][] blockIDs = new short[hSection][];
+        byte[][] blockIDs = new byte[hSection][];
         byte[][] skyLight = new byte[hSection][];
         byte[][] emitLight = new byte[hSection][];
         byte[][] blockData = new byte[hSection][];
@@ -294,7 +275,7 @@ public class CraftChunk implements Chunk {
             empty[i] = true;
         }
 
-        return new CraftChunkSnapshot(x, z, world.getName(), world.getFullTime(), blockIDs, blockData, skyLight, emitLight, empty, new int[256], biome, biomeTemp, biomeRain);
+        return new CraftChunkSnapshot(x, z, world.getName(), world.getFullTime(), blockIDs, new byte[hSection][], blockData, skyLight, emitLight, empty, null, new int[256], biome, biomeTemp, biomeRain);
     }
 
     private static float[] getTemperatures(WorldChunkManager chunkmanager, int chunkX, int chunkZ) {
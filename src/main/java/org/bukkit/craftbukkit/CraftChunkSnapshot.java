@@ -3,37 +3,43 @@ package org.bukkit.craftbukkit;
 import org.bukkit.ChunkSnapshot;
 import org.bukkit.block.Biome;
 import org.bukkit.craftbukkit.block.CraftBlock;
+import org.bukkit.craftbukkit.util.SnapshotLease;
 
 import net.minecraft.server.BiomeBase;
 
 /**
  * Represents a static, thread-safe snapshot of chunk of blocks
  * Purpose is to allow clean, efficient copy of a chunk data to be made, and then handed off for processing in another thread (e.g. map rendering)
+ * The section arrays are shared with the chunk, which copies them before it next changes them
  */
 public class CraftChunkSnapshot implements ChunkSnapshot {
     private final int x, z;
     private final String worldname;
-    private final short[][] blockids; /* Block IDs, by section */
+    private final byte[][] blockids; /* Block IDs, by section */
+    private final byte[][] extblockids; /* Extended block ID nibbles, by section, null if none */
     private final byte[][] blockdata;
     private final byte[][] skylight;
     private final byte[][] emitlight;
     private final boolean[] empty;
+    private final SnapshotLease[] leases; /* Keep the section arrays accounted for while this snapshot holds them, null if none */
     private final int[] hmap; // Height map
     private final long captureFulltime;
     private final BiomeBase[] biome;
     private final double[] biomeTemp;
     private final double[] biomeRain;
 
-    CraftChunkSnapshot(int x, int z, String wname, long wtime, short[][] sectionBlockIDs, byte[][] sectionBlockData, byte[][] sectionSkyLights, byte[][] sectionEmitLights, boolean[] sectionEmpty, int[] hmap, BiomeBase[] biome, double[] biomeTemp, double[] biomeRain) {
+    CraftChunkSnapshot(int x, int z, String wname, long wtime, byte[][] sectionBlockIDs, byte[][] sectionExtBlockIDs, byte[][] sectionBlockData, byte[][] sectionSkyLights, byte[][] sectionEmitLights, boolean[] sectionEmpty, SnapshotLease[] sectionLeases, int[] hmap, BiomeBase[] biome, double[] biomeTemp, double[] biomeRain) {
         this.x = x;
         this.z = z;
         this.worldname = wname;
         this.captureFulltime = wtime;
         this.blockids = sectionBlockIDs;
+        this.extblockids = sectionExtBlockIDs;
         this.blockdata = sectionBlockData;
         this.skylight = sectionSkyLights;
         this.emitlight = sectionEmitLights;
         this.empty = sectionEmpty;
+        this.leases = sectionLeases;
         this.hmap = hmap;
         this.biome = biome;
         this.biomeTemp = biomeTemp;
@@ -53,7 +59,13 @@ public class CraftChunkSnapshot implements ChunkSnapshot {
     }
 
     public final int getBlockTypeId(int x, int y, int z) {
-        return blockids[y >> 4][((y & 0xF) << 8) | (z << 4) | x];
+        int off = ((y & 0xF) << 8) | (z << 4) | x;
+        int id = blockids[y >> 4][off] & 0xFF;
+        byte[] extids = extblockids[y >> 4];
+        if (extids != null) {
+            id |= ((extids[off >> 1] >> ((x & 1) << 2)) & 0xF) << 8;
+        }
+        return id;
     }
 
     public final int getBlockData(int x, int y, int z) {
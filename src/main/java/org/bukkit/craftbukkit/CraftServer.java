@@ -17,6 +17,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -122,6 +126,7 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.configuration.serialization.ConfigurationSerialization;
 import org.bukkit.conversations.Conversable;
+import org.bukkit.craftbukkit.command.CraftCommandMap;
 import org.bukkit.craftbukkit.command.VanillaCommandWrapper;
 import org.bukkit.craftbukkit.help.SimpleHelpMap;
 import org.bukkit.craftbukkit.inventory.CraftFurnaceRecipe;
@@ -135,6 +140,9 @@ import org.bukkit.craftbukkit.map.CraftMapView;
 import org.bukkit.craftbukkit.metadata.EntityMetadataStore;
 import org.bukkit.craftbukkit.metadata.PlayerMetadataStore;
 import org.bukkit.craftbukkit.metadata.WorldMetadataStore;
+import org.bukkit.craftbukkit.profile.MojangProfileResolver;
+import org.bukkit.craftbukkit.profile.ProfileCache;
+import org.bukkit.craftbukkit.profile.ProfileService;
 import org.bukkit.craftbukkit.potion.CraftPotionBrewer;
 import org.bukkit.craftbukkit.scheduler.CraftScheduler;
 import org.bukkit.craftbukkit.scoreboard.CraftScoreboardManager;
@@ -143,6 +151,7 @@ import org.bukkit.craftbukkit.updater.BukkitDLUpdaterService;
 import org.bukkit.craftbukkit.util.CraftIconCache;
 import org.bukkit.craftbukkit.util.CraftMagicNumbers;
 import org.bukkit.craftbukkit.util.DatFileFilter;
+import org.bukkit.craftbukkit.util.OnlinePlayerIndex;
 import org.bukkit.craftbukkit.util.Versioning;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryType;
@@ -174,7 +183,6 @@ import org.bukkit.potion.Potion;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.plugin.messaging.StandardMessenger;
 import org.bukkit.scheduler.BukkitWorker;
-import org.bukkit.util.StringUtil;
 import org.bukkit.util.permissions.DefaultPermissions;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.SafeConstructor;
@@ -197,7 +205,7 @@ public final class CraftServer implements Server {
     private final Logger logger = Logger.getLogger("Minecraft");
     private final ServicesManager servicesManager = new SimpleServicesManager();
     private final CraftScheduler scheduler = new CraftScheduler();
-    private final SimpleCommandMap commandMap = new SimpleCommandMap(this);
+    private final SimpleCommandMap commandMap = new CraftCommandMap(this);
     private final SimpleHelpMap helpMap = new SimpleHelpMap(this);
     private final StandardMessenger messenger = new StandardMessenger();
     private final PluginManager pluginManager = new SimplePluginManager(this, commandMap);
@@ -212,12 +220,25 @@ public final class CraftServer implements Server {
     private final EntityMetadataStore entityMetadata = new EntityMetadataStore();
     private final PlayerMetadataStore playerMetadata = new PlayerMetadataStore();
     private final WorldMetadataStore worldMetadata = new WorldMetadataStore();
+    private final OnlinePlayerIndex onlinePlayers = new OnlinePlayerIndex();
+    private final ProfileService profileService;
+    private final int profileLookupTimeout;
     private int monsterSpawn = -1;
     private int animalSpawn = -1;
     private int waterAnimalSpawn = -1;
     private int ambientSpawn = -1;
     public int chunkGCPeriod = -1;
     public int chunkGCLoadThresh = 0;
+    public boolean blockMoveEvents = false;
+    public double itemMergeRadius = 0.5D;
+    public double expMergeRadius = 0.0D;
+    public int mergeMaxPerSection = 0;
+    public int goalInactiveRange = 0;
+    public int goalInactiveInterval = 1;
+    public int activationRangeMonsters = 0;
+    public int activationRangeAnimals = 0;
+    public int activationRangeMisc = 0;
+    public int activationInactiveInterval = 1;
     private File container;
     private WarningState warningState = WarningState.DEFAULT;
     private final BooleanWrapper online = new BooleanWrapper();
@@ -305,8 +326,28 @@ public final class CraftServer implements Server {
         warningState = WarningState.value(configuration.getString("settings.deprecated-verbose"));
         chunkGCPeriod = configuration.getInt("chunk-gc.period-in-ticks");
         chunkGCLoadThresh = configuration.getInt("chunk-gc.load-threshold");
+        blockMoveEvents = configuration.getBoolean("settings.block-move-events");
+        itemMergeRadius = configuration.getDouble("entity-merge.item-radius");
+        expMergeRadius = configuration.getDouble("entity-merge.exp-radius");
+        mergeMaxPerSection = configuration.getInt("entity-merge.max-per-chunk-section");
+        goalInactiveRange = configuration.getInt("goal-selector.inactive-range");
+        goalInactiveInterval = Math.max(1, configuration.getInt("goal-selector.inactive-interval"));
+        activationRangeMonsters = configuration.getInt("activation-range.monsters");
+        activationRangeAnimals = configuration.getInt("activation-range.animals");
+        activationRangeMisc = configuration.getInt("activation-range.misc");
+        activationInactiveInterval = Math.max(1, configuration.getInt("activation-range.inactive-interval"));
         loadIcon();
 
+        ProfileCache profileCache = new ProfileCache(new File("profilecache.json"), TimeUnit.DAYS.toMillis(configuration.getInt("profile-cache.ttl-in-days")), TimeUnit.MINUTES.toMillis(configuration.getInt("profile-cache.missing-ttl-in-minutes")));
+        profileCache.load();
+        profileCache.loadUserCache(new File("usercache.json"));
+        profileLookupTimeout = Math.max(1, configuration.getInt("profile-cache.lookup-timeout-in-seconds"));
+        profileService = new ProfileService(new MojangProfileResolver(console), profileCache, new Executor() {
+            public void execute(Runnable runnable) {
+                CraftServer.this.console.processQueue.add(runnable);
+            }
+        });
+
         updater = new AutoUpdater(new BukkitDLUpdaterService(configuration.getString("auto-updater.host")), getLogger(), configuration.getString("auto-updater.preferred-channel"));
         updater.setEnabled(configuration.getBoolean("auto-updater.enabled"));
         updater.setSuggestChannels(configuration.getBoolean("auto-updater.suggest-channels"));
@@ -473,60 +514,38 @@ public final class CraftServer implements Server {
 
     @SuppressWarnings("unchecked")
     public Player[] getOnlinePlayers() {
-        List<EntityPlayer> online = playerList.players;
-        Player[] players = new Player[online.size()];
+        return onlinePlayers.toArray();
+    }
 
-        for (int i = 0; i < players.length; i++) {
-            players[i] = online.get(i).playerConnection.getPlayer();
-        }
+    /**
+     * Gets an unmodifiable view of the online players. Unlike
+     * {@link #getOnlinePlayers()} this does not copy the players on every
+     * call.
+     *
+     * @return a view of the online players
+     */
+    public List<Player> getOnlinePlayerView() {
+        return onlinePlayers.view();
+    }
 
-        return players;
+    public OnlinePlayerIndex getOnlinePlayerIndex() {
+        return onlinePlayers;
     }
 
     public Player getPlayer(final String name) {
         Validate.notNull(name, "Name cannot be null");
 
-        Player[] players = getOnlinePlayers();
-
-        Player found = null;
-        String lowerName = name.toLowerCase();
-        int delta = Integer.MAX_VALUE;
-        for (Player player : players) {
-            if (player.getName().toLowerCase().startsWith(lowerName)) {
-                int curDelta = player.getName().length() - lowerName.length();
-                if (curDelta < delta) {
-                    found = player;
-                    delta = curDelta;
-                }
-                if (curDelta == 0) break;
-            }
-        }
-        return found;
+        return onlinePlayers.getByPrefix(name);
     }
 
     public Player getPlayerExact(String name) {
         Validate.notNull(name, "Name cannot be null");
 
-        String lname = name.toLowerCase();
-
-        for (Player player : getOnlinePlayers()) {
-            if (player.getName().equalsIgnoreCase(lname)) {
-                return player;
-            }
-        }
-
-        return null;
+        return onlinePlayers.getExact(name);
     }
 
-    // TODO: In 1.8+ this should use the server's UUID->EntityPlayer map
     public Player getPlayer(UUID id) {
-        for (Player player : getOnlinePlayers()) {
-            if (player.getUniqueId().equals(id)) {
-                return player;
-            }
-        }
-
-        return null;
+        return onlinePlayers.get(id);
     }
 
     public int broadcastMessage(String message) {
@@ -540,24 +559,7 @@ public final class CraftServer implements Server {
     public List<Player> matchPlayer(String partialName) {
         Validate.notNull(partialName, "PartialName cannot be null");
 
-        List<Player> matchedPlayers = new ArrayList<Player>();
-
-        for (Player iterPlayer : this.getOnlinePlayers()) {
-            String iterPlayerName = iterPlayer.getName();
-
-            if (partialName.equalsIgnoreCase(iterPlayerName)) {
-                // Exact match
-                matchedPlayers.clear();
-                matchedPlayers.add(iterPlayer);
-                break;
-            }
-            if (iterPlayerName.toLowerCase().contains(partialName.toLowerCase())) {
-                // Partial match
-                matchedPlayers.add(iterPlayer);
-            }
-        }
-
-        return matchedPlayers;
+        return onlinePlayers.match(partialName);
     }
 
     public int getMaxPlayers() {
@@ -736,6 +738,16 @@ public final class CraftServer implements Server {
         console.autosavePeriod = configuration.getInt("ticks-per.autosave");
         chunkGCPeriod = configuration.getInt("chunk-gc.period-in-ticks");
         chunkGCLoadThresh = configuration.getInt("chunk-gc.load-threshold");
+        blockMoveEvents = configuration.getBoolean("settings.block-move-events");
+        itemMergeRadius = configuration.getDouble("entity-merge.item-radius");
+        expMergeRadius = configuration.getDouble("entity-merge.exp-radius");
+        mergeMaxPerSection = configuration.getInt("entity-merge.max-per-chunk-section");
+        goalInactiveRange = configuration.getInt("goal-selector.inactive-range");
+        goalInactiveInterval = Math.max(1, configuration.getInt("goal-selector.inactive-interval"));
+        activationRangeMonsters = configuration.getInt("activation-range.monsters");
+        activationRangeAnimals = configuration.getInt("activation-range.animals");
+        activationRangeMisc = configuration.getInt("activation-range.misc");
+        activationInactiveInterval = Math.max(1, configuration.getInt("activation-range.inactive-interval"));
         loadIcon();
 
         try {
@@ -1129,14 +1141,18 @@ public final class CraftServer implements Server {
 
     public void clearRecipes() {
         CraftingManager.getInstance().recipes.clear();
+        CraftingManager.getInstance().recipeIndex.invalidate();
         RecipesFurnace.getInstance().recipes.clear();
         RecipesFurnace.getInstance().customRecipes.clear();
+        RecipesFurnace.getInstance().invalidateIndex();
     }
 
     public void resetRecipes() {
         CraftingManager.getInstance().recipes = new CraftingManager().recipes;
+        CraftingManager.getInstance().recipeIndex.invalidate();
         RecipesFurnace.getInstance().recipes = new RecipesFurnace().recipes;
         RecipesFurnace.getInstance().customRecipes.clear();
+        RecipesFurnace.getInstance().invalidateIndex();
     }
 
     public Map<String, String[]> getCommandAliases() {
@@ -1280,11 +1296,32 @@ public final class CraftServer implements Server {
 
         OfflinePlayer result = getPlayerExact(name);
         if (result == null) {
-            // This is potentially blocking :(
-            GameProfile profile = MinecraftServer.getServer().getUserCache().a(name);
+            ProfileCache.Entry entry = profileService.getCache().get(name);
+            GameProfile profile = entry == null ? null : entry.getProfile();
+            boolean remember = entry != null;
+            if (entry == null && isPrimaryThread()) {
+                // The main thread never waits for a lookup; the name is looked up in the background for later calls, and the stand-in below is not remembered.
+                // Plugins that need the real profile right away look it up through the profile service with a callback
+                profileService.lookup(name);
+            } else if (entry == null) {
+                // Other threads may wait, but not forever
+                try {
+                    profile = profileService.lookup(name).get(profileLookupTimeout, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    getLogger().log(Level.WARNING, "Failed to look up profile for " + name, ex);
+                } catch (TimeoutException ex) {
+                    getLogger().log(Level.WARNING, "Timed out looking up profile for " + name);
+                }
+                // A failed lookup leaves the name uncached, and its stand-in is not remembered either
+                remember = profile != null || profileService.getCache().get(name) != null;
+            }
+
             if (profile == null) {
                 // Make an OfflinePlayer using an offline mode UUID since the name has no profile
-                result = getOfflinePlayer(new GameProfile(UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(Charsets.UTF_8)), name));
+                GameProfile offlineProfile = new GameProfile(UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(Charsets.UTF_8)), name);
+                result = remember ? getOfflinePlayer(offlineProfile) : new CraftOfflinePlayer(this, offlineProfile);
             } else {
                 // Use the GameProfile even when we get a UUID so we ensure we still have a name
                 result = getOfflinePlayer(profile);
@@ -1404,6 +1441,10 @@ public final class CraftServer implements Server {
         return console.console;
     }
 
+    public ProfileService getProfileService() {
+        return profileService;
+    }
+
     public EntityMetadataStore getEntityMetadata() {
         return entityMetadata;
     }
@@ -1462,7 +1503,7 @@ public final class CraftServer implements Server {
             }
         }
 
-        players.addAll(Arrays.asList(getOnlinePlayers()));
+        players.addAll(getOnlinePlayerView());
 
         return players.toArray(new OfflinePlayer[players.size()]);
     }
@@ -1474,7 +1515,7 @@ public final class CraftServer implements Server {
     public void sendPluginMessage(Plugin source, String channel, byte[] message) {
         StandardMessenger.validatePluginMessage(getMessenger(), source, channel, message);
 
-        for (Player player : getOnlinePlayers()) {
+        for (Player player : getOnlinePlayerView()) {
             player.sendPluginMessage(source, channel, message);
         }
     }
@@ -1482,7 +1523,7 @@ public final class CraftServer implements Server {
     public Set<String> getListeningPluginChannels() {
         Set<String> result = new HashSet<String>();
 
-        for (Player player : getOnlinePlayers()) {
+        for (Player player : getOnlinePlayerView()) {
             result.addAll(player.getListeningPluginChannels());
         }
 
@@ -1580,12 +1621,11 @@ public final class CraftServer implements Server {
     }
 
     public List<String> tabCompleteChat(Player player, String message) {
-        Player[] players = getOnlinePlayers();
         List<String> completions = new ArrayList<String>();
         PlayerChatTabCompleteEvent event = new PlayerChatTabCompleteEvent(player, message, completions);
         String token = event.getLastToken();
-        for (Player p : players) {
-            if (player.canSee(p) && StringUtil.startsWithIgnoreCase(p.getName(), token)) {
+        for (Player p : onlinePlayers.startingWith(token)) {
+            if (player.canSee(p)) {
                 completions.add(p.getName());
             }
         }
@@ -31,7 +31,10 @@ import org.bukkit.craftbukkit.block.CraftBlockState;
 import org.bukkit.craftbukkit.entity.*;
 import org.bukkit.craftbukkit.inventory.CraftItemStack;
 import org.bukkit.craftbukkit.metadata.BlockMetadataStore;
+import org.bukkit.craftbukkit.util.BlockChangeBatch;
 import org.bukkit.craftbukkit.util.CraftMagicNumbers;
+import org.bukkit.craftbukkit.util.EntityTickList;
+import org.bukkit.craftbukkit.util.EntityTypeIndex;
 import org.bukkit.craftbukkit.util.LongHash;
 import org.bukkit.entity.*;
 import org.bukkit.entity.Entity;
@@ -85,6 +88,16 @@ public class CraftWorld implements World {
         return getChunkAt(x >> 4, z >> 4).getBlock(x & 0xF, y & 0xFF, z & 0xF);
     }
 
+    /**
+     * Creates a batch that changes many blocks of this world at once. The
+     * changed chunks are relit and resent when the batch is applied.
+     *
+     * @return a new block change batch
+     */
+    public BlockChangeBatch createBlockChangeBatch() {
+        return new BlockChangeBatch(world);
+    }
+
     public int getBlockTypeIdAt(int x, int y, int z) {
         return world.getTypeId(x, y, z);
     }
@@ -190,6 +203,7 @@ public class CraftWorld implements World {
 
         world.chunkProviderServer.unloadQueue.remove(x, z);
         world.chunkProviderServer.chunks.remove(LongHash.toLong(x, z));
+        blockMetadata.removeAll(x, z);
 
         return true;
     }
@@ -594,19 +608,7 @@ public class CraftWorld implements World {
 
     public List<LivingEntity> getLivingEntities() {
         List<LivingEntity> list = new ArrayList<LivingEntity>();
-
-        for (Object o : world.entityList) {
-            if (o instanceof net.minecraft.server.Entity) {
-                net.minecraft.server.Entity mcEnt = (net.minecraft.server.Entity) o;
-                Entity bukkitEntity = mcEnt.getBukkitEntity();
-
-                // Assuming that bukkitEntity isn't null
-                if (bukkitEntity != null && bukkitEntity instanceof LivingEntity) {
-                    list.add((LivingEntity) bukkitEntity);
-                }
-            }
-        }
-
+        getTypeIndex().collect(new Class<?>[] { LivingEntity.class }, list);
         return list;
     }
 
@@ -616,71 +618,81 @@ public class CraftWorld implements World {
         return (Collection<T>)getEntitiesByClasses(classes);
     }
 
-    @SuppressWarnings("unchecked")
     public <T extends Entity> Collection<T> getEntitiesByClass(Class<T> clazz) {
-        Collection<T> list = new ArrayList<T>();
-
-        for (Object entity: world.entityList) {
-            if (entity instanceof net.minecraft.server.Entity) {
-                Entity bukkitEntity = ((net.minecraft.server.Entity) entity).getBukkitEntity();
-
-                if (bukkitEntity == null) {
-                    continue;
-                }
-
-                Class<?> bukkitClass = bukkitEntity.getClass();
-
-                if (clazz.isAssignableFrom(bukkitClass)) {
-                    list.add((T) bukkitEntity);
-                }
-            }
-        }
-
+        List<T> list = new ArrayList<T>();
+        getTypeIndex().collect(new Class<?>[] { clazz }, list);
         return list;
     }
 
     public Collection<Entity> getEntitiesByClasses(Class<?>... classes) {
-        Collection<Entity> list = new ArrayList<Entity>();
-
-        for (Object entity: world.entityList) {
-            if (entity instanceof net.minecraft.server.Entity) {
-                Entity bukkitEntity = ((net.minecraft.server.Entity) entity).getBukkitEntity();
-
-                if (bukkitEntity == null) {
-                    continue;
-                }
-
-                Class<?> bukkitClass = bukkitEntity.getClass();
-
-                for (Class<?> clazz : classes) {
-                    if (clazz.isAssignableFrom(bukkitClass)) {
-                        list.add(bukkitEntity);
-                        break;
-                    }
-                }
-            }
-        }
+        List<Entity> list = new ArrayList<Entity>();
+        getTypeIndex().collect(classes, list);
+        return list;
+    }
 
+    /**
+     * Gets the entities whose bounding box intersects a box around a
+     * location.
+     *
+     * @param location the center of the box
+     * @param x half the size of the box along the x axis
+     * @param y half the size of the box along the y axis
+     * @param z half the size of the box along the z axis
+     * @return the entities in the box
+     */
+    public List<Entity> getNearbyEntities(Location location, double x, double y, double z) {
+        return getNearbyEntities(Entity.class, location, x, y, z);
+    }
+
+    /**
+     * Gets the entities of a class whose bounding box intersects a box
+     * around a location.
+     *
+     * @param clazz the entity class or interface to look for
+     * @param location the center of the box
+     * @param x half the size of the box along the x axis
+     * @param y half the size of the box along the y axis
+     * @param z half the size of the box along the z axis
+     * @return the entities in the box
+     */
+    public <T extends Entity> List<T> getNearbyEntities(Class<T> clazz, Location location, double x, double y, double z) {
+        Validate.notNull(location, "Location cannot be null");
+        Validate.isTrue(this.equals(location.getWorld()), "Location is in a different world");
+
+        return getEntitiesInBox(clazz, location.getX() - x, location.getY() - y, location.getZ() - z, location.getX() + x, location.getY() + y, location.getZ() + z);
+    }
+
+    /**
+     * Gets the entities of a class whose bounding box intersects a box.
+     * Only the loaded chunks the box covers are looked at.
+     *
+     * @param clazz the entity class or interface to look for
+     * @param minX the lowest x coordinate of the box
+     * @param minY the lowest y coordinate of the box
+     * @param minZ the lowest z coordinate of the box
+     * @param maxX the highest x coordinate of the box
+     * @param maxY the highest y coordinate of the box
+     * @param maxZ the highest z coordinate of the box
+     * @return the entities in the box
+     */
+    public <T extends Entity> List<T> getEntitiesInBox(Class<T> clazz, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        Validate.notNull(clazz, "Class cannot be null");
+
+        List<T> list = new ArrayList<T>();
+        EntityTypeIndex.collect(world, AxisAlignedBB.a(minX, minY, minZ, maxX, maxY, maxZ), new Class<?>[] { clazz }, list);
         return list;
     }
 
     public List<Player> getPlayers() {
         List<Player> list = new ArrayList<Player>();
-
-        for (Object o : world.entityList) {
-            if (o instanceof net.minecraft.server.Entity) {
-                net.minecraft.server.Entity mcEnt = (net.minecraft.server.Entity) o;
-                Entity bukkitEntity = mcEnt.getBukkitEntity();
-
-                if ((bukkitEntity != null) && (bukkitEntity instanceof Player)) {
-                    list.add((Player) bukkitEntity);
-                }
-            }
-        }
-
+        getTypeIndex().collect(new Class<?>[] { Player.class }, list);
         return list;
     }
 
+    private EntityTypeIndex getTypeIndex() {
+        return ((EntityTickList) world.entityList).getTypeIndex();
+    }
+
     public void save() {
         this.server.checkSaveState();
         try {
@@ -0,0 +1,151 @@
+package org.bukkit.craftbukkit.command;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.Server;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.craftbukkit.entity.CraftHumanEntity;
+import org.bukkit.entity.Player;
+
+/**
+ * Completes command labels from a sorted index of the registered labels and
+ * aliases instead of testing every known command.
+ * <p>
+ * The index is rebuilt on the next completion after a command is registered
+ * or the commands are cleared, and also when the known commands change size.
+ * Whether a sender may use a command is remembered per sender until the
+ * sender's permissions change.
+ */
+public class CraftCommandMap extends SimpleCommandMap {
+    private static final Comparator<Map.Entry<String, Command>> LABEL_ORDER = new Comparator<Map.Entry<String, Command>>() {
+        public int compare(Map.Entry<String, Command> a, Map.Entry<String, Command> b) {
+            return a.getKey().toLowerCase().compareTo(b.getKey().toLowerCase());
+        }
+    };
+
+    private final Map<CommandSender, SenderPermissions> permissions = new WeakHashMap<CommandSender, SenderPermissions>();
+    private String[] labels = new String[0];
+    private Command[] commands = new Command[0];
+    private int indexedSize = -1;
+    private boolean dirty = true;
+    private int version;
+
+    public CraftCommandMap(Server server) {
+        super(server);
+    }
+
+    @Override
+    public boolean register(String label, String fallbackPrefix, Command command) {
+        dirty = true;
+        return super.register(label, fallbackPrefix, command);
+    }
+
+    @Override
+    public void registerServerAliases() {
+        dirty = true;
+        super.registerServerAliases();
+    }
+
+    @Override
+    public synchronized void clearCommands() {
+        dirty = true;
+        super.clearCommands();
+    }
+
+    @Override
+    public List<String> tabComplete(CommandSender sender, String cmdLine) {
+        Validate.notNull(sender, "Sender cannot be null");
+        Validate.notNull(cmdLine, "Command line cannot null");
+
+        if (cmdLine.indexOf(' ') != -1) {
+            return super.tabComplete(sender, cmdLine);
+        }
+
+        synchronized (this) {
+            if (dirty || knownCommands.size() != indexedSize) {
+                rebuild();
+            }
+
+            String prefix = cmdLine.toLowerCase();
+            String slash = sender instanceof Player ? "/" : "";
+            List<String> completions = new ArrayList<String>();
+
+            int index = Arrays.binarySearch(labels, prefix);
+            for (int i = index < 0 ? -index - 1 : index; i < labels.length && labels[i].startsWith(prefix); i++) {
+                if (canUse(sender, commands[i])) {
+                    completions.add(slash + labels[i]);
+                }
+            }
+
+            Collections.sort(completions, String.CASE_INSENSITIVE_ORDER);
+            return completions;
+        }
+    }
+
+    private void rebuild() {
+        List<Map.Entry<String, Command>> entries = new ArrayList<Map.Entry<String, Command>>(knownCommands.entrySet());
+        labels = new String[entries.size()];
+        commands = new Command[entries.size()];
+        Collections.sort(entries, LABEL_ORDER);
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = entries.get(i).getKey().toLowerCase();
+            commands[i] = entries.get(i).getValue();
+        }
+
+        indexedSize = knownCommands.size();
+        dirty = false;
+        version++;
+    }
+
+    private boolean canUse(CommandSender sender, Command command) {
+        int epoch = getPermissionEpoch(sender);
+        if (epoch == -1) {
+            return command.testPermissionSilent(sender);
+        }
+
+        SenderPermissions cached = permissions.get(sender);
+        if (cached == null || cached.epoch != epoch || cached.version != version) {
+            cached = new SenderPermissions(epoch, version);
+            permissions.put(sender, cached);
+        }
+
+        Boolean allowed = cached.allowed.get(command);
+        if (allowed == null) {
+            allowed = command.testPermissionSilent(sender);
+            cached.allowed.put(command, allowed);
+        }
+        return allowed;
+    }
+
+    private static int getPermissionEpoch(CommandSender sender) {
+        if (sender instanceof CraftHumanEntity) {
+            return ((CraftHumanEntity) sender).getPermissionEpoch() & Integer.MAX_VALUE;
+        }
+        if (sender instanceof ServerCommandSender) {
+            return ((ServerCommandSender) sender).getPermissionEpoch() & Integer.MAX_VALUE;
+        }
+        // Plugin senders may change permissions without telling, test them every time
+        return -1;
+    }
+
+    private static final class SenderPermissions {
+        final int epoch;
+        final int version;
+        final Map<Command, Boolean> allowed = new IdentityHashMap<Command, Boolean>();
+
+        SenderPermissions(int epoch, int version) {
+            this.epoch = epoch;
+            this.version = version;
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.util.Set;
 
 public abstract class ServerCommandSender implements CommandSender {
     private final PermissibleBase perm = new PermissibleBase(this);
+    private int permissionEpoch;
 
     public ServerCommandSender() {
     }
@@ -34,27 +35,43 @@ public abstract class ServerCommandSender implements CommandSender {
     }
 
     public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value) {
+        permissionEpoch++;
         return perm.addAttachment(plugin, name, value);
     }
 
     public PermissionAttachment addAttachment(Plugin plugin) {
+        permissionEpoch++;
         return perm.addAttachment(plugin);
     }
 
     public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value, int ticks) {
+        permissionEpoch++;
         return perm.addAttachment(plugin, name, value, ticks);
     }
 
     public PermissionAttachment addAttachment(Plugin plugin, int ticks) {
+        permissionEpoch++;
         return perm.addAttachment(plugin, ticks);
     }
 
     public void removeAttachment(PermissionAttachment attachment) {
         perm.removeAttachment(attachment);
+        permissionEpoch++;
     }
 
     public void recalculatePermissions() {
         perm.recalculatePermissions();
+        permissionEpoch++;
+    }
+
+    /**
+     * Gets a counter that changes whenever the permissions of this sender
+     * may have changed.
+     *
+     * @return the permission epoch
+     */
+    public int getPermissionEpoch() {
+        return permissionEpoch;
     }
 
     public Set<PermissionAttachmentInfo> getEffectivePermissions() {
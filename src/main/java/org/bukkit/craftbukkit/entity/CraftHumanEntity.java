@@ -41,6 +41,7 @@ public class CraftHumanEntity extends CraftLivingEntity implements HumanEntity {
     private CraftInventoryPlayer inventory;
     private final CraftInventory enderChest;
     protected final PermissibleBase perm = new PermissibleBase(this);
+    protected int permissionEpoch;
     private boolean op;
     private GameMode mode;
 
@@ -116,32 +117,49 @@ public class CraftHumanEntity extends CraftLivingEntity implements HumanEntity {
     }
 
     public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value) {
+        permissionEpoch++;
         return perm.addAttachment(plugin, name, value);
     }
 
     public PermissionAttachment addAttachment(Plugin plugin) {
+        permissionEpoch++;
         return perm.addAttachment(plugin);
     }
 
     public PermissionAttachment addAttachment(Plugin plugin, String name, boolean value, int ticks) {
+        permissionEpoch++;
         return perm.addAttachment(plugin, name, value, ticks);
     }
 
     public PermissionAttachment addAttachment(Plugin plugin, int ticks) {
+        permissionEpoch++;
         return perm.addAttachment(plugin, ticks);
     }
 
     public void removeAttachment(PermissionAttachment attachment) {
         perm.removeAttachment(attachment);
+        permissionEpoch++;
     }
 
     public void recalculatePermissions() {
         perm.recalculatePermissions();
+        permissionEpoch++;
     }
 
     public void setOp(boolean value) {
         this.op = value;
         perm.recalculatePermissions();
+        permissionEpoch++;
+    }
+
+    /**
+     * Gets a counter that changes whenever the permissions of this sender
+     * may have changed.
+     *
+     * @return the permission epoch
+     */
+    public int getPermissionEpoch() {
+        return permissionEpoch;
     }
 
     public Set<PermissionAttachmentInfo> getEffectivePermissions() {
@@ -98,6 +98,7 @@ public class CraftPlayer extends CraftHumanEntity implements Player {
         }
 
         perm.recalculatePermissions();
+        permissionEpoch++;
     }
 
     public boolean isOnline() {
@@ -162,6 +163,21 @@ public class CraftPlayer extends CraftHumanEntity implements Player {
         }
     }
 
+    /**
+     * Sends already built chat packets, honouring modal conversations the
+     * same way {@link #sendMessage(String)} does. Used to broadcast one set of
+     * packets to many players.
+     *
+     * @param packets the chat packets
+     */
+    public void sendChat(PacketPlayOutChat[] packets) {
+        if (getHandle().playerConnection == null || conversationTracker.isConversingModaly()) return;
+
+        for (PacketPlayOutChat packet : packets) {
+            getHandle().playerConnection.sendPacket(packet);
+        }
+    }
+
     @Override
     public String getDisplayName() {
         return getHandle().displayName;
@@ -918,6 +934,14 @@ public class CraftPlayer extends CraftHumanEntity implements Player {
         return !hiddenPlayers.contains(player.getUniqueId());
     }
 
+    public boolean canSee(UUID id) {
+        return !hiddenPlayers.contains(id);
+    }
+
+    public boolean isHidingPlayers() {
+        return !hiddenPlayers.isEmpty();
+    }
+
     public Map<String, Object> serialize() {
         Map<String, Object> result = new LinkedHashMap<String, Object>();
 
@@ -1121,6 +1145,7 @@ public class CraftPlayer extends CraftHumanEntity implements Player {
     public void disconnect(String reason) {
         conversationTracker.abandonAllConversations();
         perm.clearPermissions();
+        permissionEpoch++;
     }
 
     public boolean isFlying() {
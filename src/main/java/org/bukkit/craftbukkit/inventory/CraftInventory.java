@@ -82,13 +82,19 @@ public class CraftInventory implements Inventory {
         getInventory().setItem(index, ((item == null || item.getTypeId() == 0) ? null : CraftItemStack.asNMSCopy(item)));
     }
 
+    /**
+     * Gets the NMS item stacks in the slot order of {@link #getContents()}.
+     * The array may be shorter or longer than {@link #getSize()}, and may
+     * be the live contents of the inventory.
+     *
+     * @return the NMS item stacks
+     */
+    net.minecraft.server.ItemStack[] getNMSContents() {
+        return getInventory().getContents();
+    }
+
     public boolean contains(int materialId) {
-        for (ItemStack item : getContents()) {
-            if (item != null && item.getTypeId() == materialId) {
-                return true;
-            }
-        }
-        return false;
+        return InventoryOperations.first(getNMSContents(), getSize(), materialId) != -1;
     }
 
     public boolean contains(Material material) {
@@ -100,26 +106,14 @@ public class CraftInventory implements Inventory {
         if (item == null) {
             return false;
         }
-        for (ItemStack i : getContents()) {
-            if (item.equals(i)) {
-                return true;
-            }
-        }
-        return false;
+        return InventoryOperations.first(getNMSContents(), getSize(), item, true) != -1;
     }
 
     public boolean contains(int materialId, int amount) {
         if (amount <= 0) {
             return true;
         }
-        for (ItemStack item : getContents()) {
-            if (item != null && item.getTypeId() == materialId) {
-                if ((amount -= item.getAmount()) <= 0) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return InventoryOperations.count(getNMSContents(), getSize(), materialId, amount) >= amount;
     }
 
     public boolean contains(Material material, int amount) {
@@ -134,12 +128,7 @@ public class CraftInventory implements Inventory {
         if (amount <= 0) {
             return true;
         }
-        for (ItemStack i : getContents()) {
-            if (item.equals(i) && --amount <= 0) {
-                return true;
-            }
-        }
-        return false;
+        return InventoryOperations.countEqual(getNMSContents(), getSize(), item, amount) >= amount;
     }
 
     public boolean containsAtLeast(ItemStack item, int amount) {
@@ -149,22 +138,18 @@ public class CraftInventory implements Inventory {
         if (amount <= 0) {
             return true;
         }
-        for (ItemStack i : getContents()) {
-            if (item.isSimilar(i) && (amount -= i.getAmount()) <= 0) {
-                return true;
-            }
-        }
-        return false;
+        return InventoryOperations.countSimilar(getNMSContents(), getSize(), item, amount) >= amount;
     }
 
     public HashMap<Integer, ItemStack> all(int materialId) {
         HashMap<Integer, ItemStack> slots = new HashMap<Integer, ItemStack>();
 
-        ItemStack[] inventory = getContents();
-        for (int i = 0; i < inventory.length; i++) {
-            ItemStack item = inventory[i];
-            if (item != null && item.getTypeId() == materialId) {
-                slots.put(i, item);
+        net.minecraft.server.ItemStack[] contents = getNMSContents();
+        int size = getSize();
+        for (int i = 0; i < size; i++) {
+            net.minecraft.server.ItemStack item = InventoryOperations.get(contents, i);
+            if (item != null && InventoryOperations.getTypeId(item) == materialId) {
+                slots.put(i, CraftItemStack.asCraftMirror(item));
             }
         }
         return slots;
@@ -178,10 +163,12 @@ public class CraftInventory implements Inventory {
     public HashMap<Integer, ItemStack> all(ItemStack item) {
         HashMap<Integer, ItemStack> slots = new HashMap<Integer, ItemStack>();
         if (item != null) {
-            ItemStack[] inventory = getContents();
-            for (int i = 0; i < inventory.length; i++) {
-                if (item.equals(inventory[i])) {
-                    slots.put(i, inventory[i]);
+            net.minecraft.server.ItemStack[] contents = getNMSContents();
+            int size = getSize();
+            for (int i = 0; i < size; i++) {
+                net.minecraft.server.ItemStack slot = InventoryOperations.get(contents, i);
+                if (InventoryOperations.matches(item, slot, true)) {
+                    slots.put(i, CraftItemStack.asCraftMirror(slot));
                 }
             }
         }
@@ -189,14 +176,7 @@ public class CraftInventory implements Inventory {
     }
 
     public int first(int materialId) {
-        ItemStack[] inventory = getContents();
-        for (int i = 0; i < inventory.length; i++) {
-            ItemStack item = inventory[i];
-            if (item != null && item.getTypeId() == materialId) {
-                return i;
-            }
-        }
-        return -1;
+        return InventoryOperations.first(getNMSContents(), getSize(), materialId);
     }
 
     public int first(Material material) {
@@ -212,36 +192,27 @@ public class CraftInventory implements Inventory {
         if (item == null) {
             return -1;
         }
-        ItemStack[] inventory = getContents();
-        for (int i = 0; i < inventory.length; i++) {
-            if (inventory[i] == null) continue;
-
-            if (withAmount ? item.equals(inventory[i]) : item.isSimilar(inventory[i])) {
-                return i;
-            }
-        }
-        return -1;
+        return InventoryOperations.first(getNMSContents(), getSize(), item, withAmount);
     }
 
     public int firstEmpty() {
-        ItemStack[] inventory = getContents();
-        for (int i = 0; i < inventory.length; i++) {
-            if (inventory[i] == null) {
-                return i;
-            }
-        }
-        return -1;
+        return firstEmpty(getNMSContents(), getSize());
+    }
+
+    /**
+     * Gets the first slot {@link #firstEmpty()} and {@link #addItem} may
+     * fill, in contents taken from {@link #getNMSContents()}.
+     *
+     * @param contents the NMS item stacks
+     * @param size the number of slots
+     * @return the slot, or -1 if there is none
+     */
+    int firstEmpty(net.minecraft.server.ItemStack[] contents, int size) {
+        return InventoryOperations.firstEmpty(contents, size);
     }
 
     public int firstPartial(int materialId) {
-        ItemStack[] inventory = getContents();
-        for (int i = 0; i < inventory.length; i++) {
-            ItemStack item = inventory[i];
-            if (item != null && item.getTypeId() == materialId && item.getAmount() < item.getMaxStackSize()) {
-                return i;
-            }
-        }
-        return -1;
+        return InventoryOperations.firstPartial(getNMSContents(), getSize(), materialId);
     }
 
     public int firstPartial(Material material) {
@@ -249,41 +220,26 @@ public class CraftInventory implements Inventory {
         return firstPartial(material.getId());
     }
 
-    private int firstPartial(ItemStack item) {
-        ItemStack[] inventory = getContents();
-        ItemStack filteredItem = CraftItemStack.asCraftCopy(item);
-        if (item == null) {
-            return -1;
-        }
-        for (int i = 0; i < inventory.length; i++) {
-            ItemStack cItem = inventory[i];
-            if (cItem != null && cItem.getAmount() < cItem.getMaxStackSize() && cItem.isSimilar(filteredItem)) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
     public HashMap<Integer, ItemStack> addItem(ItemStack... items) {
         Validate.noNullElements(items, "Item cannot be null");
         HashMap<Integer, ItemStack> leftover = new HashMap<Integer, ItemStack>();
-
-        /* TODO: some optimization
-         *  - Create a 'firstPartial' with a 'fromIndex'
-         *  - Record the lastPartial per Material
-         *  - Cache firstEmpty result
-         */
+        int size = getSize();
 
         for (int i = 0; i < items.length; i++) {
             ItemStack item = items[i];
+            // Only the amount of the item changes below, so it can be compared as one NMS copy
+            net.minecraft.server.ItemStack filteredItem = CraftItemStack.asNMSCopy(item);
+
             while (true) {
+                net.minecraft.server.ItemStack[] contents = getNMSContents();
+
                 // Do we already have a stack of it?
-                int firstPartial = firstPartial(item);
+                int firstPartial = InventoryOperations.firstPartial(contents, size, filteredItem);
 
                 // Drat! no partial stack
                 if (firstPartial == -1) {
                     // Find a free spot!
-                    int firstFree = firstEmpty();
+                    int firstFree = firstEmpty(contents, size);
 
                     if (firstFree == -1) {
                         // No space at all!
@@ -304,20 +260,20 @@ public class CraftInventory implements Inventory {
                     }
                 } else {
                     // So, apparently it might only partially fit, well lets do just that
-                    ItemStack partialItem = getItem(firstPartial);
+                    net.minecraft.server.ItemStack partialItem = contents[firstPartial];
 
                     int amount = item.getAmount();
-                    int partialAmount = partialItem.getAmount();
-                    int maxAmount = partialItem.getMaxStackSize();
+                    int partialAmount = partialItem.count;
+                    int maxAmount = partialItem.getItem().getMaxStackSize();
 
                     // Check if it fully fits
                     if (amount + partialAmount <= maxAmount) {
-                        partialItem.setAmount(amount + partialAmount);
+                        partialItem.count = amount + partialAmount;
                         break;
                     }
 
                     // It fits partially
-                    partialItem.setAmount(maxAmount);
+                    partialItem.count = maxAmount;
                     item.setAmount(amount + partialAmount - maxAmount);
                 }
             }
@@ -328,15 +284,23 @@ public class CraftInventory implements Inventory {
     public HashMap<Integer, ItemStack> removeItem(ItemStack... items) {
         Validate.notNull(items, "Items cannot be null");
         HashMap<Integer, ItemStack> leftover = new HashMap<Integer, ItemStack>();
-
-        // TODO: optimization
+        int size = getSize();
 
         for (int i = 0; i < items.length; i++) {
             ItemStack item = items[i];
             int toDelete = item.getAmount();
+            // Slots before the last match have been checked already
+            int from = 0;
 
             while (true) {
-                int first = first(item, false);
+                net.minecraft.server.ItemStack[] contents = getNMSContents();
+                int first = -1;
+                for (int slot = from; slot < size; slot++) {
+                    if (InventoryOperations.matches(item, InventoryOperations.get(contents, slot), false)) {
+                        first = slot;
+                        break;
+                    }
+                }
 
                 // Drat! we don't have this type in the inventory
                 if (first == -1) {
@@ -344,17 +308,18 @@ public class CraftInventory implements Inventory {
                     leftover.put(i, item);
                     break;
                 } else {
-                    ItemStack itemStack = getItem(first);
-                    int amount = itemStack.getAmount();
+                    net.minecraft.server.ItemStack itemStack = contents[first];
+                    int amount = itemStack.count;
 
                     if (amount <= toDelete) {
                         toDelete -= amount;
                         // clear the slot, all used up
                         clear(first);
+                        from = first + 1;
                     } else {
                         // split the stack and store
-                        itemStack.setAmount(amount - toDelete);
-                        setItem(first, itemStack);
+                        itemStack.count = amount - toDelete;
+                        setItem(first, CraftItemStack.asCraftMirror(itemStack));
                         toDelete = 0;
                     }
                 }
@@ -373,9 +338,11 @@ public class CraftInventory implements Inventory {
     }
 
     public void remove(int materialId) {
-        ItemStack[] items = getContents();
-        for (int i = 0; i < items.length; i++) {
-            if (items[i] != null && items[i].getTypeId() == materialId) {
+        net.minecraft.server.ItemStack[] contents = getNMSContents();
+        int size = getSize();
+        for (int i = 0; i < size; i++) {
+            net.minecraft.server.ItemStack item = InventoryOperations.get(contents, i);
+            if (item != null && InventoryOperations.getTypeId(item) == materialId) {
                 clear(i);
             }
         }
@@ -387,9 +354,10 @@ public class CraftInventory implements Inventory {
     }
 
     public void remove(ItemStack item) {
-        ItemStack[] items = getContents();
-        for (int i = 0; i < items.length; i++) {
-            if (items[i] != null && items[i].equals(item)) {
+        net.minecraft.server.ItemStack[] contents = getNMSContents();
+        int size = getSize();
+        for (int i = 0; i < size; i++) {
+            if (item != null && InventoryOperations.matches(item, InventoryOperations.get(contents, i), true)) {
                 clear(i);
             }
         }
@@ -59,6 +59,23 @@ public class CraftInventoryCrafting extends CraftInventory implements CraftingIn
         return items;
     }
 
+    @Override
+    net.minecraft.server.ItemStack[] getNMSContents() {
+        net.minecraft.server.ItemStack[] mcResultItems = getResultInventory().getContents();
+        net.minecraft.server.ItemStack[] mcItems = getMatrixInventory().getContents();
+        net.minecraft.server.ItemStack[] items = new net.minecraft.server.ItemStack[mcResultItems.length + mcItems.length];
+
+        System.arraycopy(mcResultItems, 0, items, 0, mcResultItems.length);
+        System.arraycopy(mcItems, 0, items, mcResultItems.length, mcItems.length);
+        return items;
+    }
+
+    @Override
+    int firstEmpty(net.minecraft.server.ItemStack[] contents, int size) {
+        // Empty crafting slots were never free, filling the result slot would hand out the item for the grid's ingredients
+        return -1;
+    }
+
     public void setContents(ItemStack result, ItemStack[] contents) {
         setResult(result);
         setMatrix(contents);
@@ -182,6 +182,7 @@ public final class CraftItemStack extends ItemStack {
         if (!makeTag(handle)) {
             return;
         }
+        handle.tagVersion++;
         NBTTagList list = getEnchantmentList(handle);
         if (list == null) {
             list = new NBTTagList();
@@ -254,6 +255,7 @@ public final class CraftItemStack extends ItemStack {
         if (index == Integer.MIN_VALUE) {
             return 0;
         }
+        handle.tagVersion++;
         if (size == 1) {
             handle.tag.remove(ENCHANTMENTS.NBT);
             if (handle.tag.isEmpty()) {
@@ -320,29 +322,45 @@ public final class CraftItemStack extends ItemStack {
         if (!hasItemMeta(item)) {
             return CraftItemFactory.instance().getItemMeta(getType(item));
         }
-        switch (getType(item)) {
+
+        // Decoding the tag is the expensive part, keep the decoded meta until the tag changes and hand out copies
+        // Tags may be changed in place, so the tag is compared with a copy of the one the meta was decoded from; the hash rules most changes out cheaply
+        ItemMeta meta = item.metaCache;
+        int tagHash = item.tag.hashCode();
+        if (meta == null || item.metaCacheItem != item.getItem() || item.metaCacheTagHash != tagHash || !item.metaCacheTag.equals(item.tag)) {
+            meta = decodeItemMeta(getType(item), item.tag);
+            item.metaCache = meta;
+            item.metaCacheItem = item.getItem();
+            item.metaCacheTag = (NBTTagCompound) item.tag.clone();
+            item.metaCacheTagHash = tagHash;
+        }
+        return meta.clone();
+    }
+
+    private static ItemMeta decodeItemMeta(Material type, NBTTagCompound tag) {
+        switch (type) {
             case WRITTEN_BOOK:
             case BOOK_AND_QUILL:
-                return new CraftMetaBook(item.tag);
+                return new CraftMetaBook(tag);
             case SKULL_ITEM:
-                return new CraftMetaSkull(item.tag);
+                return new CraftMetaSkull(tag);
             case LEATHER_HELMET:
             case LEATHER_CHESTPLATE:
             case LEATHER_LEGGINGS:
             case LEATHER_BOOTS:
-                return new CraftMetaLeatherArmor(item.tag);
+                return new CraftMetaLeatherArmor(tag);
             case POTION:
-                return new CraftMetaPotion(item.tag);
+                return new CraftMetaPotion(tag);
             case MAP:
-                return new CraftMetaMap(item.tag);
+                return new CraftMetaMap(tag);
             case FIREWORK:
-                return new CraftMetaFirework(item.tag);
+                return new CraftMetaFirework(tag);
             case FIREWORK_CHARGE:
-                return new CraftMetaCharge(item.tag);
+                return new CraftMetaCharge(tag);
             case ENCHANTED_BOOK:
-                return new CraftMetaEnchantedBook(item.tag);
+                return new CraftMetaEnchantedBook(tag);
             default:
-                return new CraftMetaItem(item.tag);
+                return new CraftMetaItem(tag);
         }
     }
 
@@ -361,7 +379,7 @@ public final class CraftItemStack extends ItemStack {
             return false;
         }
         if (CraftItemFactory.instance().equals(itemMeta, null)) {
-            item.tag = null;
+            item.setTag(null);
             return true;
         }
         if (!CraftItemFactory.instance().isApplicable(itemMeta, getType(item))) {
@@ -397,7 +415,7 @@ public final class CraftItemStack extends ItemStack {
         if (!(that.getTypeId() == getTypeId() && getDurability() == that.getDurability())) {
             return false;
         }
-        return hasItemMeta() ? that.hasItemMeta() && handle.tag.equals(that.handle.tag) : !that.hasItemMeta();
+        return hasItemMeta() ? that.hasItemMeta() && InventoryOperations.tagsMatch(handle, that.handle) : !that.hasItemMeta();
     }
 
     @Override
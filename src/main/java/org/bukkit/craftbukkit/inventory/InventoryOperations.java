@@ -0,0 +1,206 @@
+package org.bukkit.craftbukkit.inventory;
+
+import org.bukkit.craftbukkit.util.CraftMagicNumbers;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Inventory queries that look at the NMS item stacks of an inventory
+ * directly instead of wrapping every slot in a Bukkit mirror. Mirrors are
+ * only made for slots handed back to the caller, or when a plain Bukkit
+ * item stack has to compare item meta with a slot of the same type and
+ * durability.
+ * <p>
+ * Contents are given in the slot order of {@link CraftInventory#getContents()};
+ * slots past the end of the array count as empty.
+ */
+final class InventoryOperations {
+
+    private InventoryOperations() {}
+
+    static net.minecraft.server.ItemStack get(net.minecraft.server.ItemStack[] contents, int index) {
+        return index < contents.length ? contents[index] : null;
+    }
+
+    static int getTypeId(net.minecraft.server.ItemStack item) {
+        return CraftMagicNumbers.getId(item.getItem());
+    }
+
+    /**
+     * Gets whether a slot holds the given Bukkit item stack, like
+     * {@code item.equals(slot)} or {@code item.isSimilar(slot)} on a mirror
+     * of the slot.
+     *
+     * @param item the item to look for
+     * @param slot the slot contents, may be null
+     * @param withAmount whether the amounts must match too
+     * @return true if the slot matches
+     */
+    static boolean matches(ItemStack item, net.minecraft.server.ItemStack slot, boolean withAmount) {
+        if (slot == null) {
+            return false;
+        }
+
+        if (item instanceof CraftItemStack) {
+            net.minecraft.server.ItemStack handle = ((CraftItemStack) item).handle;
+            if (handle == slot) {
+                return true;
+            }
+            if (handle == null || (withAmount && handle.count != slot.count)) {
+                return false;
+            }
+            return isSimilar(handle, slot);
+        }
+
+        // Plain item stacks compare item meta, so only mirror slots that pass the cheap checks first
+        if ((withAmount && item.getAmount() != slot.count) || item.getTypeId() != getTypeId(slot) || item.getDurability() != (short) slot.getData()) {
+            return false;
+        }
+        CraftItemStack mirror = CraftItemStack.asCraftMirror(slot);
+        return withAmount ? item.equals(mirror) : item.isSimilar(mirror);
+    }
+
+    /**
+     * Gets whether two NMS item stacks stack together, like
+     * {@link CraftItemStack#isSimilar(ItemStack)} on their mirrors.
+     *
+     * @param item the first item
+     * @param other the second item
+     * @return true if type, durability and tag match
+     */
+    static boolean isSimilar(net.minecraft.server.ItemStack item, net.minecraft.server.ItemStack other) {
+        if (item == other) {
+            return true;
+        }
+        if (getTypeId(item) != getTypeId(other) || (short) item.getData() != (short) other.getData()) {
+            return false;
+        }
+        if (!CraftItemStack.hasItemMeta(item)) {
+            return !CraftItemStack.hasItemMeta(other);
+        }
+        return CraftItemStack.hasItemMeta(other) && tagsMatch(item, other);
+    }
+
+    /**
+     * Gets whether two item stacks with tags have equal tags. Stacks whose
+     * cached tag hashes differ are told apart without comparing the tags.
+     *
+     * @param item the first item
+     * @param other the second item
+     * @return true if the tags are equal
+     */
+    static boolean tagsMatch(net.minecraft.server.ItemStack item, net.minecraft.server.ItemStack other) {
+        return item.tag == other.tag || (item.getTagHash() == other.getTagHash() && item.tag.equals(other.tag));
+    }
+
+    static int first(net.minecraft.server.ItemStack[] contents, int size, int materialId) {
+        for (int i = 0; i < size; i++) {
+            net.minecraft.server.ItemStack slot = get(contents, i);
+            if (slot != null && getTypeId(slot) == materialId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int first(net.minecraft.server.ItemStack[] contents, int size, ItemStack item, boolean withAmount) {
+        for (int i = 0; i < size; i++) {
+            if (matches(item, get(contents, i), withAmount)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int firstEmpty(net.minecraft.server.ItemStack[] contents, int size) {
+        for (int i = 0; i < size; i++) {
+            if (get(contents, i) == null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int firstPartial(net.minecraft.server.ItemStack[] contents, int size, int materialId) {
+        for (int i = 0; i < size; i++) {
+            net.minecraft.server.ItemStack slot = get(contents, i);
+            if (slot != null && getTypeId(slot) == materialId && slot.count < slot.getItem().getMaxStackSize()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static int firstPartial(net.minecraft.server.ItemStack[] contents, int size, net.minecraft.server.ItemStack item) {
+        if (item == null) {
+            return -1;
+        }
+        for (int i = 0; i < size; i++) {
+            net.minecraft.server.ItemStack slot = get(contents, i);
+            if (slot != null && slot.count < slot.getItem().getMaxStackSize() && isSimilar(slot, item)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the items of a type until the given amount is reached.
+     *
+     * @param contents the inventory contents
+     * @param size the inventory size
+     * @param materialId the type to count
+     * @param amount the amount to stop at
+     * @return the amount found, at most the given amount if it was reached
+     */
+    static int count(net.minecraft.server.ItemStack[] contents, int size, int materialId, int amount) {
+        int found = 0;
+        for (int i = 0; i < size && found < amount; i++) {
+            net.minecraft.server.ItemStack slot = get(contents, i);
+            if (slot != null && getTypeId(slot) == materialId) {
+                found += slot.count;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Counts the items similar to the given item until the given amount is
+     * reached.
+     *
+     * @param contents the inventory contents
+     * @param size the inventory size
+     * @param item the item to count
+     * @param amount the amount to stop at
+     * @return the amount found, at most the given amount if it was reached
+     */
+    static int countSimilar(net.minecraft.server.ItemStack[] contents, int size, ItemStack item, int amount) {
+        int found = 0;
+        for (int i = 0; i < size && found < amount; i++) {
+            net.minecraft.server.ItemStack slot = get(contents, i);
+            if (matches(item, slot, false)) {
+                found += slot.count;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Counts the stacks equal to the given item, amount included, until the
+     * given number of stacks is reached.
+     *
+     * @param contents the inventory contents
+     * @param size the inventory size
+     * @param item the item to count
+     * @param stacks the number of stacks to stop at
+     * @return the number of stacks found
+     */
+    static int countEqual(net.minecraft.server.ItemStack[] contents, int size, ItemStack item, int stacks) {
+        int found = 0;
+        for (int i = 0; i < size && found < stacks; i++) {
+            if (matches(item, get(contents, i), true)) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,83 @@
+package org.bukkit.craftbukkit.inventory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import net.minecraft.server.Item;
+import net.minecraft.server.ItemStack;
+
+/**
+ * Looks up the value of a map keyed by item stacks by item and data, the
+ * way furnace recipes match their input: a key with the wildcard data value
+ * 32767 matches any data. Keys with an exact data value take precedence
+ * over wildcard keys.
+ * <p>
+ * The index is built from the map on the next lookup after
+ * {@link #invalidate()}, and also when a different map is passed in or the
+ * map changes size.
+ */
+public final class ItemDataIndex {
+    private static final int WILDCARD = 32767;
+
+    private final Map<Long, Object> exact = new HashMap<Long, Object>();
+    private final Map<Item, Object> wildcard = new HashMap<Item, Object>();
+    private Map indexedMap;
+    private int indexedSize;
+    private boolean dirty = true;
+
+    /**
+     * Marks the index stale after the map changed.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Gets the value for the first key in the map that matches an item stack.
+     *
+     * @param map the map to look in, keyed by item stacks
+     * @param itemstack the item stack to match
+     * @return the value, or null if no key matches
+     */
+    public Object get(Map map, ItemStack itemstack) {
+        if (dirty || map != indexedMap || map.size() != indexedSize) {
+            rebuild(map);
+        }
+
+        Item item = itemstack.getItem();
+        Object value = exact.get(key(item, itemstack.getData()));
+        return value != null ? value : wildcard.get(item);
+    }
+
+    private void rebuild(Map map) {
+        exact.clear();
+        wildcard.clear();
+
+        Iterator iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry entry = (Map.Entry) iterator.next();
+            ItemStack key = (ItemStack) entry.getKey();
+
+            // Keep the first match, like a scan of the map would
+            if (key.getData() == WILDCARD) {
+                if (!wildcard.containsKey(key.getItem())) {
+                    wildcard.put(key.getItem(), entry.getValue());
+                }
+            } else {
+                Long index = key(key.getItem(), key.getData());
+                if (!exact.containsKey(index)) {
+                    exact.put(index, entry.getValue());
+                }
+            }
+        }
+
+        indexedMap = map;
+        indexedSize = map.size();
+        dirty = false;
+    }
+
+    private static Long key(Item item, int data) {
+        return ((long) Item.b(item) << 32) | (data & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,223 @@
+package org.bukkit.craftbukkit.inventory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.server.CraftingManager;
+import net.minecraft.server.IRecipe;
+import net.minecraft.server.InventoryCrafting;
+import net.minecraft.server.Item;
+import net.minecraft.server.ItemStack;
+import net.minecraft.server.ShapedRecipes;
+import net.minecraft.server.ShapelessRecipes;
+
+/**
+ * Narrows down the crafting recipes that could match a crafting grid.
+ * <p>
+ * Shaped and shapeless recipes are filed under a fingerprint of their
+ * ingredients: the sorted item ids, plus the width and height of the
+ * ingredients for shaped recipes. A grid only needs to test the recipes
+ * filed under its own fingerprints and the special recipes (dyed armour,
+ * fireworks, map and book copies and anything else that is not a plain
+ * shaped or shapeless recipe), in the order of the recipe list. Grids
+ * remember the candidates for their last fingerprint.
+ * <p>
+ * The index is rebuilt on the next lookup after {@link #invalidate()}, and
+ * also when the recipe list is replaced or changes size.
+ */
+public final class RecipeIndex {
+    private final CraftingManager manager;
+    private final Map<Key, int[]> buckets = new HashMap<Key, int[]>();
+    private IRecipe[] recipes = new IRecipe[0];
+    private int[] special = new int[0];
+    private List indexedList;
+    private int indexedSize;
+    private boolean dirty = true;
+    private int version;
+
+    public RecipeIndex(CraftingManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Marks the index stale after the recipe list changed.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Gets the recipes that could match a crafting grid, in recipe list
+     * order.
+     *
+     * @param grid the crafting grid
+     * @return the candidate recipes
+     */
+    public IRecipe[] getCandidates(InventoryCrafting grid) {
+        List list = manager.recipes;
+        if (dirty || list != indexedList || list.size() != indexedSize) {
+            rebuild(list);
+        }
+
+        int[] ids = new int[9];
+        int count = 0;
+        int minX = 3, minY = 3, maxX = -1, maxY = -1;
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 3; x++) {
+                ItemStack itemstack = grid.b(x, y);
+                if (itemstack != null) {
+                    ids[count++] = Item.b(itemstack.getItem());
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+
+        Key key = count == 0 ? null : new Key(shape(maxX - minX + 1, maxY - minY + 1), ids, count);
+        if (grid.recipeIndexVersion == version && (key == null ? grid.recipeIndexKey == null : key.equals(grid.recipeIndexKey))) {
+            return grid.recipeCandidates;
+        }
+
+        IRecipe[] candidates;
+        if (key == null) {
+            candidates = select(special, null, null);
+        } else {
+            candidates = select(special, buckets.get(key), buckets.get(new Key(0, key.ids, key.ids.length)));
+        }
+
+        grid.recipeIndexVersion = version;
+        grid.recipeIndexKey = key;
+        grid.recipeCandidates = candidates;
+        return candidates;
+    }
+
+    private void rebuild(List list) {
+        recipes = (IRecipe[]) list.toArray(new IRecipe[list.size()]);
+        buckets.clear();
+
+        Map<Key, List<Integer>> grouped = new HashMap<Key, List<Integer>>();
+        List<Integer> others = new ArrayList<Integer>();
+        for (int i = 0; i < recipes.length; i++) {
+            Key key = keyOf(recipes[i]);
+            List<Integer> bucket = key == null ? others : grouped.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<Integer>(1);
+                grouped.put(key, bucket);
+            }
+            bucket.add(i);
+        }
+
+        for (Map.Entry<Key, List<Integer>> entry : grouped.entrySet()) {
+            buckets.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        special = toArray(others);
+
+        indexedList = list;
+        indexedSize = list.size();
+        dirty = false;
+        version++;
+    }
+
+    private static Key keyOf(IRecipe recipe) {
+        // Subclasses may match differently, only index the plain recipe classes
+        if (recipe.getClass() == ShapedRecipes.class) {
+            ShapedRecipes shaped = (ShapedRecipes) recipe;
+            int[] ids = new int[shaped.items.length];
+            int count = 0;
+            int minX = shaped.width, minY = shaped.height, maxX = -1, maxY = -1;
+            for (int i = 0; i < shaped.items.length; i++) {
+                ItemStack itemstack = shaped.items[i];
+                if (itemstack != null) {
+                    int x = i % shaped.width;
+                    int y = i / shaped.width;
+                    ids[count++] = Item.b(itemstack.getItem());
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+            // An empty recipe matches an empty grid, leave it with the special recipes
+            return count == 0 ? null : new Key(shape(maxX - minX + 1, maxY - minY + 1), ids, count);
+        } else if (recipe.getClass() == ShapelessRecipes.class) {
+            List ingredients = ((ShapelessRecipes) recipe).ingredients;
+            if (ingredients.isEmpty() || ingredients.size() > 9) {
+                return null;
+            }
+
+            int[] ids = new int[ingredients.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = Item.b(((ItemStack) ingredients.get(i)).getItem());
+            }
+            return new Key(0, ids, ids.length);
+        }
+        return null;
+    }
+
+    private IRecipe[] select(int[] a, int[] b, int[] c) {
+        int length = a.length + (b == null ? 0 : b.length) + (c == null ? 0 : c.length);
+        int[] positions = new int[length];
+        System.arraycopy(a, 0, positions, 0, a.length);
+        int offset = a.length;
+        if (b != null) {
+            System.arraycopy(b, 0, positions, offset, b.length);
+            offset += b.length;
+        }
+        if (c != null) {
+            System.arraycopy(c, 0, positions, offset, c.length);
+        }
+        Arrays.sort(positions);
+
+        IRecipe[] result = new IRecipe[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = recipes[positions[i]];
+        }
+        return result;
+    }
+
+    private static int shape(int width, int height) {
+        return width << 2 | height;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static final class Key {
+        // Zero for shapeless recipes
+        final int shape;
+        final int[] ids;
+        private final int hash;
+
+        Key(int shape, int[] ids, int count) {
+            this.shape = shape;
+            this.ids = new int[count];
+            System.arraycopy(ids, 0, this.ids, 0, count);
+            Arrays.sort(this.ids);
+            this.hash = 31 * shape + Arrays.hashCode(this.ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return shape == other.shape && Arrays.equals(ids, other.ids);
+        }
+    }
+}
@@ -49,5 +49,7 @@ public class RecipeIterator implements Iterator<Recipe> {
             throw new IllegalStateException();
         }
         removeFrom.remove();
+        CraftingManager.getInstance().recipeIndex.invalidate();
+        RecipesFurnace.getInstance().invalidateIndex();
     }
 }
@@ -1,31 +1,48 @@
 package org.bukkit.craftbukkit.map;
 
+import java.util.UUID;
+
 import net.minecraft.server.WorldMap;
 import net.minecraft.server.WorldMapDecoration;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.map.MapCanvas;
+import org.bukkit.map.MapCursor;
 import org.bukkit.map.MapCursorCollection;
 import org.bukkit.map.MapRenderer;
 import org.bukkit.map.MapView;
 
 public class CraftMapRenderer extends MapRenderer {
 
+    private final CraftMapView mapView;
     private final WorldMap worldMap;
+    private MapCanvas lastCanvas;
 
     public CraftMapRenderer(CraftMapView mapView, WorldMap worldMap) {
         super(false);
+        this.mapView = mapView;
         this.worldMap = worldMap;
     }
 
     @Override
     public void render(MapView map, MapCanvas canvas, Player player) {
-        // Map
-        for (int x = 0; x < 128; ++x) {
-            for (int y = 0; y < 128; ++y) {
-                canvas.setPixel(x, y, worldMap.colors[y * 128 + x]);
+        // Map - only copy the region changed since the last render, or everything for a new canvas
+        if (canvas != lastCanvas) {
+            lastCanvas = canvas;
+            worldMap.dirtyMinX = 0;
+            worldMap.dirtyMinY = 0;
+            worldMap.dirtyMaxX = 127;
+            worldMap.dirtyMaxY = 127;
+        }
+
+        if (worldMap.dirtyMinX <= worldMap.dirtyMaxX) {
+            byte[] colors = worldMap.colors;
+            for (int y = worldMap.dirtyMinY; y <= worldMap.dirtyMaxY; ++y) {
+                for (int x = worldMap.dirtyMinX; x <= worldMap.dirtyMaxX; ++x) {
+                    canvas.setPixel(x, y, colors[y * 128 + x]);
+                }
             }
+            worldMap.clearColorsDirty();
         }
 
         // Cursors
@@ -34,15 +51,17 @@ public class CraftMapRenderer extends MapRenderer {
             cursors.removeCursor(cursors.getCursor(0));
         }
 
-        for (Object key : worldMap.g.keySet()) {
-            // If this cursor is for a player check visibility with vanish system
-            Player other = Bukkit.getPlayerExact((String) key);
-            if (other != null && !player.canSee(other)) {
-                continue;
-            }
+        mapView.playerCursors.clear();
 
+        for (Object key : worldMap.g.keySet()) {
             WorldMapDecoration decoration = (WorldMapDecoration) worldMap.g.get(key);
-            cursors.addCursor(decoration.locX, decoration.locY, (byte) (decoration.rotation & 15), decoration.type);
+            MapCursor cursor = cursors.addCursor(decoration.locX, decoration.locY, (byte) (decoration.rotation & 15), decoration.type);
+
+            // If this cursor is for a player remember who, the view checks visibility with vanish system per viewer
+            UUID other = worldMap.decorationPlayers.get(key);
+            if (other != null) {
+                mapView.playerCursors.put(cursor, other);
+            }
         }
     }
 
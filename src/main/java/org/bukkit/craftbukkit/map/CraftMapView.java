@@ -3,15 +3,19 @@ package org.bukkit.craftbukkit.map;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.WorldMap;
 
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.craftbukkit.CraftWorld;
 import org.bukkit.craftbukkit.entity.CraftPlayer;
+import org.bukkit.map.MapCursor;
 import org.bukkit.map.MapRenderer;
 import org.bukkit.map.MapView;
 
@@ -21,6 +25,8 @@ public final class CraftMapView implements MapView {
     private final List<MapRenderer> renderers = new ArrayList<MapRenderer>();
     private final Map<MapRenderer, Map<CraftPlayer, CraftMapCanvas>> canvases = new HashMap<MapRenderer, Map<CraftPlayer, CraftMapCanvas>>();
     protected final WorldMap worldMap;
+    final Map<MapCursor, UUID> playerCursors = new IdentityHashMap<MapCursor, UUID>();
+    private int sharedRenderTick = -1;
 
     public CraftMapView(WorldMap worldMap) {
         this.worldMap = worldMap;
@@ -92,6 +98,7 @@ public final class CraftMapView implements MapView {
             renderers.add(renderer);
             canvases.put(renderer, new HashMap<CraftPlayer, CraftMapCanvas>());
             renderer.initialize(this);
+            sharedRenderTick = -1;
         }
     }
 
@@ -106,6 +113,10 @@ public final class CraftMapView implements MapView {
                 }
             }
             canvases.remove(renderer);
+            if (renderer instanceof CraftMapRenderer) {
+                playerCursors.clear();
+            }
+            sharedRenderTick = -1;
             return true;
         } else {
             return false;
@@ -126,12 +137,24 @@ public final class CraftMapView implements MapView {
         if (render == null) {
             render = new RenderData();
             renderCache.put(context ? player : null, render);
+            sharedRenderTick = -1;
         }
 
-        if (context && renderCache.containsKey(null)) {
-            renderCache.remove(null);
+        if (context) {
+            if (renderCache.containsKey(null)) {
+                renderCache.remove(null);
+            }
+            render(render, player);
+        } else if (sharedRenderTick != MinecraftServer.currentTick) {
+            // A non-contextual map looks the same to every viewer, so only render it once per tick
+            render(render, player);
+            sharedRenderTick = MinecraftServer.currentTick;
         }
 
+        return filterCursors(render, player);
+    }
+
+    private void render(RenderData render, CraftPlayer player) {
         Arrays.fill(render.buffer, (byte) 0);
         render.cursors.clear();
 
@@ -156,8 +179,29 @@ public final class CraftMapView implements MapView {
                 render.cursors.add(canvas.getCursors().getCursor(i));
             }
         }
+    }
+
+    private RenderData filterCursors(RenderData render, CraftPlayer player) {
+        if (playerCursors.isEmpty() || !player.isHidingPlayers()) {
+            return render;
+        }
+
+        // Hide the cursors of players the viewer can not see, sharing the rendered pixels
+        RenderData filtered = null;
+        for (int i = 0; i < render.cursors.size(); ++i) {
+            MapCursor cursor = render.cursors.get(i);
+            UUID owner = playerCursors.get(cursor);
+            boolean hidden = owner != null && !player.canSee(owner);
+
+            if (hidden && filtered == null) {
+                filtered = new RenderData(render.buffer);
+                filtered.cursors.addAll(render.cursors.subList(0, i));
+            } else if (!hidden && filtered != null) {
+                filtered.cursors.add(cursor);
+            }
+        }
 
-        return render;
+        return filtered == null ? render : filtered;
     }
 
 }
@@ -9,7 +9,11 @@ public class RenderData {
     public final ArrayList<MapCursor> cursors;
 
     public RenderData() {
-        this.buffer = new byte[128 * 128];
+        this(new byte[128 * 128]);
+    }
+
+    public RenderData(byte[] buffer) {
+        this.buffer = buffer;
         this.cursors = new ArrayList<MapCursor>();
     }
 
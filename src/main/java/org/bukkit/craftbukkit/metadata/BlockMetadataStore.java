@@ -2,8 +2,9 @@ package org.bukkit.craftbukkit.metadata;
 
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.craftbukkit.util.LongHash;
+import org.bukkit.craftbukkit.util.LongObjectHashMap;
 import org.bukkit.metadata.MetadataStore;
-import org.bukkit.metadata.MetadataStoreBase;
 import org.bukkit.metadata.MetadataValue;
 import org.bukkit.plugin.Plugin;
 
@@ -11,10 +12,14 @@ import java.util.List;
 
 /**
  * A BlockMetadataStore stores metadata values for {@link Block} objects.
+ * <p>
+ * Values are grouped by the chunk the block is in, so all metadata for a chunk
+ * can be dropped at once when it unloads.
  */
-public class BlockMetadataStore extends MetadataStoreBase<Block> implements MetadataStore<Block> {
+public class BlockMetadataStore extends PackedMetadataStore<Block> implements MetadataStore<Block> {
 
     private final World owningWorld;
+    private final LongObjectHashMap<MetadataTable> chunkTables = new LongObjectHashMap<MetadataTable>();
 
     /**
      * Initializes a BlockMetadataStore.
@@ -25,21 +30,52 @@ public class BlockMetadataStore extends MetadataStoreBase<Block> implements Meta
     }
 
     /**
-     * Generates a unique metadata key for a {@link Block} object based on its coordinates in the world.
-     * @see MetadataStoreBase#disambiguate(Object, String)
+     * Packs the block position within its chunk and the interned metadata key into a single key. The chunk
+     * itself is identified by the table the key is stored in.
+     * @see PackedMetadataStore#pack(Object, int)
      * @param block the block
-     * @param metadataKey The name identifying the metadata value
-     * @return a unique metadata key
+     * @param keyId The interned id of the metadata key
+     * @return a key unique within the block's chunk
      */
     @Override
-    protected String disambiguate(Block block, String metadataKey) {
-        return Integer.toString(block.getX()) + ":" + Integer.toString(block.getY()) + ":"  + Integer.toString(block.getZ()) + ":"  + metadataKey;
+    protected long pack(Block block, int keyId) {
+        return ((long) keyId << 40) | ((block.getY() & 0xFFFFFFFFL) << 8) | ((block.getZ() & 0xF) << 4) | (block.getX() & 0xF);
+    }
+
+    @Override
+    protected MetadataTable getTable(Block block, boolean create) {
+        long chunkKey = LongHash.toLong(block.getX() >> 4, block.getZ() >> 4);
+        MetadataTable table = chunkTables.get(chunkKey);
+        if (table == null && create) {
+            table = new MetadataTable();
+            chunkTables.put(chunkKey, table);
+        }
+        return table;
+    }
+
+    @Override
+    protected void removeTable(Block block) {
+        chunkTables.remove(LongHash.toLong(block.getX() >> 4, block.getZ() >> 4));
+    }
+
+    @Override
+    protected Iterable<MetadataTable> getTables() {
+        return chunkTables.values();
+    }
+
+    /**
+     * Removes all metadata stored for blocks in the given chunk. Called when the chunk is unloaded.
+     * @param chunkX The chunk's x coordinate
+     * @param chunkZ The chunk's z coordinate
+     */
+    public synchronized void removeAll(int chunkX, int chunkZ) {
+        chunkTables.remove(LongHash.toLong(chunkX, chunkZ));
     }
 
     /**
      * Retrieves the metadata for a {@link Block}, ensuring the block being asked for actually belongs to this BlockMetadataStore's
      * owning world.
-     * @see MetadataStoreBase#getMetadata(Object, String)
+     * @see PackedMetadataStore#getMetadata(Object, String)
      */
     @Override
     public List<MetadataValue> getMetadata(Block block, String metadataKey) {
@@ -53,7 +89,7 @@ public class BlockMetadataStore extends MetadataStoreBase<Block> implements Meta
     /**
      * Tests to see if a metadata value has been added to a {@link Block}, ensuring the block being interrogated belongs
      * to this BlockMetadataStore's owning world.
-     * @see MetadataStoreBase#hasMetadata(Object, String)
+     * @see PackedMetadataStore#hasMetadata(Object, String)
      */
     @Override
     public boolean hasMetadata(Block block, String metadataKey) {
@@ -67,7 +103,7 @@ public class BlockMetadataStore extends MetadataStoreBase<Block> implements Meta
     /**
      * Removes metadata from from a {@link Block} belonging to a given {@link Plugin}, ensuring the block being deleted from belongs
      * to this BlockMetadataStore's owning world.
-     * @see MetadataStoreBase#removeMetadata(Object, String, org.bukkit.plugin.Plugin)
+     * @see PackedMetadataStore#removeMetadata(Object, String, org.bukkit.plugin.Plugin)
      */
     @Override
     public void removeMetadata(Block block, String metadataKey, Plugin owningPlugin) {
@@ -81,7 +117,7 @@ public class BlockMetadataStore extends MetadataStoreBase<Block> implements Meta
     /**
      * Sets or overwrites a metadata value on a {@link Block} from a given {@link Plugin}, ensuring the target block belongs
      * to this BlockMetadataStore's owning world.
-     * @see MetadataStoreBase#setMetadata(Object, String, org.bukkit.metadata.MetadataValue)
+     * @see PackedMetadataStore#setMetadata(Object, String, org.bukkit.metadata.MetadataValue)
      */
     @Override
     public void setMetadata(Block block, String metadataKey, MetadataValue newMetadataValue) {
@@ -1,23 +1,49 @@
 package org.bukkit.craftbukkit.metadata;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
 import org.bukkit.entity.Entity;
 import org.bukkit.metadata.MetadataStore;
-import org.bukkit.metadata.MetadataStoreBase;
 
 /**
  * An EntityMetadataStore stores metadata values for all {@link Entity} classes an their descendants.
  */
-public class EntityMetadataStore extends MetadataStoreBase<Entity> implements MetadataStore<Entity> {
+public class EntityMetadataStore extends PackedMetadataStore<Entity> implements MetadataStore<Entity> {
+    private final Map<UUID, MetadataTable> entityTables = new HashMap<UUID, MetadataTable>();
+
     /**
-     * Generates a unique metadata key for an {@link Entity} UUID.
+     * Uses the interned metadata key directly, as each {@link Entity} UUID has its own table.
      *
-     * @see MetadataStoreBase#disambiguate(Object, String)
+     * @see PackedMetadataStore#pack(Object, int)
      * @param entity the entity
-     * @param metadataKey The name identifying the metadata value
-     * @return a unique metadata key
+     * @param keyId The interned id of the metadata key
+     * @return a key unique within the entity's table
      */
     @Override
-    protected String disambiguate(Entity entity, String metadataKey) {
-        return entity.getUniqueId().toString() + ":" + metadataKey;
+    protected long pack(Entity entity, int keyId) {
+        return keyId;
+    }
+
+    @Override
+    protected MetadataTable getTable(Entity entity, boolean create) {
+        UUID uuid = entity.getUniqueId();
+        MetadataTable table = entityTables.get(uuid);
+        if (table == null && create) {
+            table = new MetadataTable();
+            entityTables.put(uuid, table);
+        }
+        return table;
+    }
+
+    @Override
+    protected void removeTable(Entity entity) {
+        entityTables.remove(entity.getUniqueId());
+    }
+
+    @Override
+    protected Iterable<MetadataTable> getTables() {
+        return entityTables.values();
     }
 }
@@ -0,0 +1,144 @@
+package org.bukkit.craftbukkit.metadata;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.bukkit.metadata.MetadataValue;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * An open addressed table mapping packed long keys to the per plugin values
+ * stored for them. Used by the metadata stores so lookups never have to build
+ * a string key.
+ */
+@SuppressWarnings("unchecked")
+final class MetadataTable {
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] keys;
+    private Map<Plugin, MetadataValue>[] values;
+    private int size;
+
+    MetadataTable() {
+        keys = new long[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY_KEY);
+        values = new Map[INITIAL_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    Map<Plugin, MetadataValue> get(long key) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long innerKey = keys[i];
+            if (innerKey == EMPTY_KEY) {
+                return null;
+            } else if (innerKey == key) {
+                return values[i];
+            }
+        }
+    }
+
+    void put(long key, Map<Plugin, MetadataValue> value) {
+        if ((size + 1) << 1 > keys.length) {
+            resize(keys.length << 1);
+        }
+
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long innerKey = keys[i];
+            if (innerKey == EMPTY_KEY) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return;
+            } else if (innerKey == key) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    Map<Plugin, MetadataValue> remove(long key) {
+        int mask = keys.length - 1;
+        for (int i = index(key, mask); ; i = (i + 1) & mask) {
+            long innerKey = keys[i];
+            if (innerKey == EMPTY_KEY) {
+                return null;
+            } else if (innerKey == key) {
+                Map<Plugin, MetadataValue> value = values[i];
+                removeSlot(i);
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Invalidates every value owned by the given plugin.
+     *
+     * @param owningPlugin the plugin whose values should be invalidated
+     */
+    void invalidateAll(Plugin owningPlugin) {
+        for (int i = 0; i < values.length; i++) {
+            Map<Plugin, MetadataValue> entry = values[i];
+            if (entry != null) {
+                MetadataValue value = entry.get(owningPlugin);
+                if (value != null) {
+                    value.invalidate();
+                }
+            }
+        }
+    }
+
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        keys[slot] = EMPTY_KEY;
+        values[slot] = null;
+        size--;
+
+        // Shift back any entries in the same probe run so lookups never stop early
+        for (int i = (slot + 1) & mask; keys[i] != EMPTY_KEY; i = (i + 1) & mask) {
+            long key = keys[i];
+            int ideal = index(key, mask);
+            if ((i > slot && (ideal <= slot || ideal > i)) || (i < slot && (ideal <= slot && ideal > i))) {
+                keys[slot] = key;
+                values[slot] = values[i];
+                keys[i] = EMPTY_KEY;
+                values[i] = null;
+                slot = i;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Map<Plugin, MetadataValue>[] oldValues = values;
+
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        values = new Map[capacity];
+        size = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int index(long key, int mask) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
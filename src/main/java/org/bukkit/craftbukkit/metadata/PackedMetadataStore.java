@@ -0,0 +1,135 @@
+package org.bukkit.craftbukkit.metadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.metadata.MetadataStore;
+import org.bukkit.metadata.MetadataValue;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * A PackedMetadataStore stores metadata in {@link MetadataTable}s keyed by a
+ * primitive long derived from the subject and an interned metadata key, so
+ * reads and writes do not allocate a disambiguation string.
+ */
+abstract class PackedMetadataStore<T> implements MetadataStore<T> {
+    private final Map<String, Integer> keyIds = new HashMap<String, Integer>();
+
+    /**
+     * Gets the table holding the metadata for a subject.
+     *
+     * @param subject the subject
+     * @param create whether to create the table if it does not exist yet
+     * @return the table, or null if it does not exist and create is false
+     */
+    protected abstract MetadataTable getTable(T subject, boolean create);
+
+    /**
+     * Removes the table holding the metadata for a subject once it is empty.
+     *
+     * @param subject the subject
+     */
+    protected abstract void removeTable(T subject);
+
+    /**
+     * Packs a subject and an interned metadata key into a table key.
+     *
+     * @param subject the subject
+     * @param keyId the interned metadata key
+     * @return the table key
+     */
+    protected abstract long pack(T subject, int keyId);
+
+    /**
+     * Gets every table currently held by this store.
+     *
+     * @return the tables
+     */
+    protected abstract Iterable<MetadataTable> getTables();
+
+    public synchronized void setMetadata(T subject, String metadataKey, MetadataValue newMetadataValue) {
+        Validate.notNull(newMetadataValue, "Value cannot be null");
+        Plugin owningPlugin = newMetadataValue.getOwningPlugin();
+        Validate.notNull(owningPlugin, "Plugin cannot be null");
+
+        Integer keyId = keyIds.get(metadataKey);
+        if (keyId == null) {
+            keyId = keyIds.size();
+            keyIds.put(metadataKey, keyId);
+        }
+
+        MetadataTable table = getTable(subject, true);
+        long key = pack(subject, keyId);
+        Map<Plugin, MetadataValue> entry = table.get(key);
+        if (entry == null) {
+            entry = new WeakHashMap<Plugin, MetadataValue>(1);
+            table.put(key, entry);
+        }
+        entry.put(owningPlugin, newMetadataValue);
+    }
+
+    public synchronized List<MetadataValue> getMetadata(T subject, String metadataKey) {
+        Map<Plugin, MetadataValue> entry = getEntry(subject, metadataKey);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<MetadataValue>(entry.values()));
+    }
+
+    public synchronized boolean hasMetadata(T subject, String metadataKey) {
+        return getEntry(subject, metadataKey) != null;
+    }
+
+    public synchronized void removeMetadata(T subject, String metadataKey, Plugin owningPlugin) {
+        Validate.notNull(owningPlugin, "Plugin cannot be null");
+
+        Integer keyId = keyIds.get(metadataKey);
+        if (keyId == null) {
+            return;
+        }
+
+        MetadataTable table = getTable(subject, false);
+        if (table == null) {
+            return;
+        }
+
+        long key = pack(subject, keyId);
+        Map<Plugin, MetadataValue> entry = table.get(key);
+        if (entry == null) {
+            return;
+        }
+
+        entry.remove(owningPlugin);
+        if (entry.isEmpty()) {
+            table.remove(key);
+            if (table.isEmpty()) {
+                removeTable(subject);
+            }
+        }
+    }
+
+    public synchronized void invalidateAll(Plugin owningPlugin) {
+        Validate.notNull(owningPlugin, "Plugin cannot be null");
+        for (MetadataTable table : getTables()) {
+            table.invalidateAll(owningPlugin);
+        }
+    }
+
+    private Map<Plugin, MetadataValue> getEntry(T subject, String metadataKey) {
+        Integer keyId = keyIds.get(metadataKey);
+        if (keyId == null) {
+            return null;
+        }
+
+        MetadataTable table = getTable(subject, false);
+        if (table == null) {
+            return null;
+        }
+        return table.get(pack(subject, keyId));
+    }
+}
@@ -0,0 +1,42 @@
+package org.bukkit.craftbukkit.profile;
+
+import java.util.UUID;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.com.google.common.base.Charsets;
+import net.minecraft.util.com.mojang.authlib.Agent;
+import net.minecraft.util.com.mojang.authlib.GameProfile;
+import net.minecraft.util.com.mojang.authlib.ProfileLookupCallback;
+
+import org.bukkit.craftbukkit.util.MojangNameLookup;
+
+/**
+ * Resolves profiles against the Mojang account servers, or locally using
+ * offline mode UUIDs when the server is not in online mode.
+ */
+public class MojangProfileResolver implements ProfileResolver {
+    private final MinecraftServer server;
+
+    public MojangProfileResolver(MinecraftServer server) {
+        this.server = server;
+    }
+
+    public void findProfilesByNames(String[] names, ProfileLookupCallback callback) {
+        if (server.getOnlineMode()) {
+            server.getGameProfileRepository().findProfilesByNames(names, Agent.MINECRAFT, callback);
+        } else {
+            for (String name : names) {
+                callback.onProfileLookupSucceeded(new GameProfile(UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(Charsets.UTF_8)), name));
+            }
+        }
+    }
+
+    public GameProfile findProfileById(UUID id) {
+        if (!server.getOnlineMode()) {
+            return null;
+        }
+
+        String name = MojangNameLookup.lookupName(id);
+        return name == null ? null : new GameProfile(id, name);
+    }
+}
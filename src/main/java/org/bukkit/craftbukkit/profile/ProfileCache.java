@@ -0,0 +1,285 @@
+package org.bukkit.craftbukkit.profile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import net.minecraft.util.com.google.common.base.Charsets;
+import net.minecraft.util.com.google.gson.Gson;
+import net.minecraft.util.com.google.gson.GsonBuilder;
+import net.minecraft.util.com.google.gson.JsonParseException;
+import net.minecraft.util.com.mojang.authlib.GameProfile;
+import net.minecraft.util.org.apache.commons.io.IOUtils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A persistent cache of name to UUID mappings. Names without a profile are
+ * cached too, with a shorter lifetime, so unknown names are not looked up over
+ * and over again.
+ */
+public class ProfileCache {
+    private static final Logger logger = LogManager.getLogger();
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private final File file;
+    private final long expireMillis;
+    private final long missingExpireMillis;
+    private final Map<String, Entry> byName = new HashMap<String, Entry>();
+    private final Map<UUID, Entry> byId = new HashMap<UUID, Entry>();
+    private boolean dirty;
+
+    /**
+     * Creates a cache backed by the given file.
+     *
+     * @param file the file to persist to, or null to keep the cache in memory
+     * @param expireMillis how long a resolved profile is kept
+     * @param missingExpireMillis how long a name without a profile is kept
+     */
+    public ProfileCache(File file, long expireMillis, long missingExpireMillis) {
+        this.file = file;
+        this.expireMillis = expireMillis;
+        this.missingExpireMillis = missingExpireMillis;
+    }
+
+    /**
+     * Looks up a name.
+     *
+     * @param name the name
+     * @return the cached entry, or null if the name is not cached or has expired
+     */
+    public synchronized Entry get(String name) {
+        String key = name.toLowerCase();
+        Entry entry = byName.get(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            byName.remove(key);
+            if (entry.uuid != null) {
+                byId.remove(entry.getId());
+            }
+            dirty = true;
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Looks up a UUID.
+     *
+     * @param id the UUID
+     * @return the cached entry, or null if the UUID is not cached or has expired
+     */
+    public synchronized Entry get(UUID id) {
+        Entry entry = byId.get(id);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            byId.remove(id);
+            byName.remove(entry.name.toLowerCase());
+            dirty = true;
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Caches a resolved profile.
+     *
+     * @param profile the profile, which must have both a name and a UUID
+     */
+    public synchronized void put(GameProfile profile) {
+        add(new Entry(profile.getName(), profile.getId().toString(), System.currentTimeMillis() + expireMillis));
+    }
+
+    /**
+     * Caches that a name has no profile.
+     *
+     * @param name the name
+     */
+    public synchronized void putMissing(String name) {
+        add(new Entry(name, null, System.currentTimeMillis() + missingExpireMillis));
+    }
+
+    public synchronized int size() {
+        return byName.size();
+    }
+
+    public synchronized void load() {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
+            Entry[] entries = gson.fromJson(reader, Entry[].class);
+            if (entries == null) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            for (Entry entry : entries) {
+                if (entry != null && entry.name != null && !entry.isExpired(now)) {
+                    add(entry);
+                }
+            }
+            dirty = false;
+        } catch (IOException ex) {
+            logger.warn("Failed to load profile cache " + file, ex);
+        } catch (JsonParseException ex) {
+            logger.warn("Failed to parse profile cache " + file, ex);
+        } catch (IllegalArgumentException ex) {
+            logger.warn("Invalid UUID in profile cache " + file, ex);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Adds the profiles of the vanilla user cache that this cache does not
+     * know yet, so players who joined before are resolved without a lookup.
+     *
+     * @param userCache the vanilla usercache.json
+     */
+    public synchronized void loadUserCache(File userCache) {
+        if (!userCache.isFile()) {
+            return;
+        }
+
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(userCache), Charsets.UTF_8);
+            UserCacheEntry[] entries = gson.fromJson(reader, UserCacheEntry[].class);
+            if (entries == null) {
+                return;
+            }
+
+            SimpleDateFormat format = new SimpleDateFormat(UserCacheEntry.DATE_FORMAT);
+            long now = System.currentTimeMillis();
+            for (UserCacheEntry entry : entries) {
+                if (entry == null || entry.name == null || entry.uuid == null) {
+                    continue;
+                }
+                Entry known = byName.get(entry.name.toLowerCase());
+                if (known != null && known.uuid != null) {
+                    continue;
+                }
+
+                long expiresOn = now + expireMillis;
+                if (entry.expiresOn != null) {
+                    try {
+                        expiresOn = format.parse(entry.expiresOn).getTime();
+                    } catch (ParseException ex) {
+                        // An unreadable date gets the lifetime of this cache
+                    }
+                }
+                if (expiresOn > now) {
+                    add(new Entry(entry.name, UUID.fromString(entry.uuid).toString(), expiresOn));
+                }
+            }
+        } catch (IOException ex) {
+            logger.warn("Failed to load user cache " + userCache, ex);
+        } catch (JsonParseException ex) {
+            logger.warn("Failed to parse user cache " + userCache, ex);
+        } catch (IllegalArgumentException ex) {
+            logger.warn("Invalid UUID in user cache " + userCache, ex);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Writes the cache to disk if it changed since it was last saved.
+     */
+    public void save() {
+        Entry[] entries;
+        synchronized (this) {
+            if (file == null || !dirty) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            Iterator<Entry> iterator = byName.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.isExpired(now)) {
+                    iterator.remove();
+                    if (entry.uuid != null) {
+                        byId.remove(entry.getId());
+                    }
+                }
+            }
+
+            entries = byName.values().toArray(new Entry[byName.size()]);
+            dirty = false;
+        }
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8);
+            gson.toJson(entries, writer);
+        } catch (IOException ex) {
+            logger.warn("Failed to save profile cache " + file, ex);
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
+
+    private void add(Entry entry) {
+        Entry old = byName.put(entry.name.toLowerCase(), entry);
+        if (old != null && old.uuid != null) {
+            byId.remove(old.getId());
+        }
+        if (entry.uuid != null) {
+            byId.put(entry.getId(), entry);
+        }
+        dirty = true;
+    }
+
+    public static final class Entry {
+        private String name;
+        private String uuid;
+        private long expiresOn;
+
+        private Entry(String name, String uuid, long expiresOn) {
+            this.name = name;
+            this.uuid = uuid;
+            this.expiresOn = expiresOn;
+        }
+
+        public UUID getId() {
+            return uuid == null ? null : UUID.fromString(uuid);
+        }
+
+        /**
+         * Gets the cached profile.
+         *
+         * @return the profile, or null if the name is known to have none
+         */
+        public GameProfile getProfile() {
+            return uuid == null ? null : new GameProfile(getId(), name);
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresOn;
+        }
+    }
+
+    // The layout of the entries of the vanilla usercache.json
+    private static final class UserCacheEntry {
+        static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss Z";
+
+        private String name;
+        private String uuid;
+        private String expiresOn;
+    }
+}
@@ -0,0 +1,16 @@
+package org.bukkit.craftbukkit.profile;
+
+import net.minecraft.util.com.mojang.authlib.GameProfile;
+
+/**
+ * Receives the result of a {@link ProfileService} lookup on the main thread.
+ */
+public interface ProfileCallback {
+
+    /**
+     * Called once the lookup has finished.
+     *
+     * @param profile the resolved profile, or null if there is none
+     */
+    void onLookupComplete(GameProfile profile);
+}
@@ -0,0 +1,31 @@
+package org.bukkit.craftbukkit.profile;
+
+import java.util.UUID;
+
+import net.minecraft.util.com.mojang.authlib.GameProfile;
+import net.minecraft.util.com.mojang.authlib.ProfileLookupCallback;
+
+/**
+ * Resolves player profiles from an authoritative source. Implementations may
+ * block, they are only ever called from the {@link ProfileService} lookup
+ * thread.
+ */
+public interface ProfileResolver {
+
+    /**
+     * Looks up the profiles for a batch of names. Every name is reported to
+     * the callback, either as a success or as a failure.
+     *
+     * @param names the names to look up
+     * @param callback the callback to report results to
+     */
+    void findProfilesByNames(String[] names, ProfileLookupCallback callback);
+
+    /**
+     * Looks up the profile for a UUID.
+     *
+     * @param id the UUID to look up
+     * @return the profile, or null if there is none
+     */
+    GameProfile findProfileById(UUID id);
+}
@@ -0,0 +1,334 @@
+package org.bukkit.craftbukkit.profile;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.minecraft.util.com.mojang.authlib.GameProfile;
+import net.minecraft.util.com.mojang.authlib.ProfileLookupCallback;
+
+import org.apache.commons.lang.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Resolves player profiles without blocking the caller.
+ * <p>
+ * Cached results are returned immediately. Everything else is queued and
+ * resolved in batches on a background thread, and the resulting futures and
+ * callbacks are completed once the {@link ProfileResolver} answers. Callbacks
+ * run through the callback executor, which for the server is the main thread.
+ */
+public class ProfileService {
+    private static final Logger logger = LogManager.getLogger();
+    public static final int BATCH_SIZE = 100;
+
+    private final ProfileResolver resolver;
+    private final ProfileCache cache;
+    private final Executor callbackExecutor;
+    private final ExecutorService lookupExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Profile Lookup Thread");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Map<String, ProfileFuture> pendingNames = new LinkedHashMap<String, ProfileFuture>();
+    private final Map<UUID, ProfileFuture> pendingIds = new LinkedHashMap<UUID, ProfileFuture>();
+    private boolean lookupQueued;
+
+    public ProfileService(ProfileResolver resolver, ProfileCache cache, Executor callbackExecutor) {
+        this.resolver = resolver;
+        this.cache = cache;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public ProfileCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Gets the cached profile for a name without ever looking it up.
+     *
+     * @param name the name
+     * @return the profile, or null if the name is not cached or has no profile
+     */
+    public GameProfile getCachedProfile(String name) {
+        ProfileCache.Entry entry = cache.get(name);
+        return entry == null ? null : entry.getProfile();
+    }
+
+    /**
+     * Gets the cached profile for a UUID without ever looking it up.
+     *
+     * @param id the UUID
+     * @return the profile, or null if the UUID is not cached
+     */
+    public GameProfile getCachedProfile(UUID id) {
+        ProfileCache.Entry entry = cache.get(id);
+        return entry == null ? null : entry.getProfile();
+    }
+
+    public Future<GameProfile> lookup(String name) {
+        return lookup(name, null);
+    }
+
+    /**
+     * Resolves the profile for a name.
+     *
+     * @param name the name
+     * @param callback the callback to run once resolved, may be null
+     * @return a future completed with the profile, or with null if the name
+     *     has no profile
+     */
+    public Future<GameProfile> lookup(String name, ProfileCallback callback) {
+        Validate.notNull(name, "Name cannot be null");
+
+        ProfileCache.Entry entry = cache.get(name);
+        if (entry != null) {
+            return completed(entry.getProfile(), callback);
+        }
+        if (lookupExecutor.isShutdown()) {
+            return completed(null, callback);
+        }
+
+        String key = name.toLowerCase();
+        ProfileFuture future;
+        synchronized (this) {
+            future = pendingNames.get(key);
+            if (future == null) {
+                future = new ProfileFuture();
+                pendingNames.put(key, future);
+                queueLookup();
+            }
+        }
+        future.addCallback(callback);
+        return future;
+    }
+
+    public Future<GameProfile> lookup(UUID id) {
+        return lookup(id, null);
+    }
+
+    /**
+     * Resolves the profile for a UUID.
+     *
+     * @param id the UUID
+     * @param callback the callback to run once resolved, may be null
+     * @return a future completed with the profile, or with null if the UUID
+     *     has no profile
+     */
+    public Future<GameProfile> lookup(UUID id, ProfileCallback callback) {
+        Validate.notNull(id, "UUID cannot be null");
+
+        ProfileCache.Entry entry = cache.get(id);
+        if (entry != null) {
+            return completed(entry.getProfile(), callback);
+        }
+        if (lookupExecutor.isShutdown()) {
+            return completed(null, callback);
+        }
+
+        ProfileFuture future;
+        synchronized (this) {
+            future = pendingIds.get(id);
+            if (future == null) {
+                future = new ProfileFuture();
+                pendingIds.put(id, future);
+                queueLookup();
+            }
+        }
+        future.addCallback(callback);
+        return future;
+    }
+
+    /**
+     * Stops the lookup thread, waiting briefly for queued lookups, and saves
+     * the cache.
+     */
+    public void shutdown() {
+        lookupExecutor.shutdown();
+        try {
+            lookupExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        cache.save();
+    }
+
+    private ProfileFuture completed(GameProfile profile, ProfileCallback callback) {
+        ProfileFuture future = new ProfileFuture();
+        future.complete(profile);
+        future.addCallback(callback);
+        return future;
+    }
+
+    // Must hold the lock on this
+    private void queueLookup() {
+        if (!lookupQueued) {
+            lookupQueued = true;
+            lookupExecutor.execute(new Runnable() {
+                public void run() {
+                    processQueue();
+                }
+            });
+        }
+    }
+
+    private void processQueue() {
+        while (true) {
+            Map<String, ProfileFuture> names = new LinkedHashMap<String, ProfileFuture>();
+            Map<UUID, ProfileFuture> ids = new LinkedHashMap<UUID, ProfileFuture>();
+
+            synchronized (this) {
+                drain(pendingNames, names);
+                drain(pendingIds, ids);
+                if (names.isEmpty() && ids.isEmpty()) {
+                    lookupQueued = false;
+                    break;
+                }
+            }
+
+            if (!names.isEmpty()) {
+                resolveNames(names);
+            }
+
+            for (Map.Entry<UUID, ProfileFuture> entry : ids.entrySet()) {
+                GameProfile profile = null;
+                try {
+                    profile = resolver.findProfileById(entry.getKey());
+                } catch (RuntimeException ex) {
+                    logger.warn("Failed to look up profile for " + entry.getKey(), ex);
+                }
+
+                if (profile != null && profile.getName() != null) {
+                    cache.put(profile);
+                }
+                entry.getValue().complete(profile);
+            }
+        }
+
+        cache.save();
+    }
+
+    private void resolveNames(final Map<String, ProfileFuture> names) {
+        try {
+            resolver.findProfilesByNames(names.keySet().toArray(new String[names.size()]), new ProfileLookupCallback() {
+                public void onProfileLookupSucceeded(GameProfile profile) {
+                    cache.put(profile);
+                    ProfileFuture future = names.remove(profile.getName().toLowerCase());
+                    if (future != null) {
+                        future.complete(profile);
+                    }
+                }
+
+                public void onProfileLookupFailed(GameProfile profile, Exception exception) {
+                    cache.putMissing(profile.getName());
+                    ProfileFuture future = names.remove(profile.getName().toLowerCase());
+                    if (future != null) {
+                        future.complete(null);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            logger.warn("Failed to look up profiles for " + names.keySet(), ex);
+        }
+
+        // Anything the resolver did not report on is completed without a profile, but not cached
+        for (ProfileFuture future : names.values()) {
+            future.complete(null);
+        }
+    }
+
+    private static <K> void drain(Map<K, ProfileFuture> from, Map<K, ProfileFuture> to) {
+        Iterator<Map.Entry<K, ProfileFuture>> iterator = from.entrySet().iterator();
+        while (iterator.hasNext() && to.size() < BATCH_SIZE) {
+            Map.Entry<K, ProfileFuture> entry = iterator.next();
+            to.put(entry.getKey(), entry.getValue());
+            iterator.remove();
+        }
+    }
+
+    private final class ProfileFuture implements Future<GameProfile> {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final List<ProfileCallback> callbacks = new ArrayList<ProfileCallback>(1);
+        private volatile GameProfile profile;
+        private boolean done;
+
+        void addCallback(ProfileCallback callback) {
+            if (callback == null) {
+                return;
+            }
+
+            synchronized (this) {
+                if (!done) {
+                    callbacks.add(callback);
+                    return;
+                }
+            }
+            dispatch(callback);
+        }
+
+        void complete(GameProfile profile) {
+            List<ProfileCallback> toRun;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                this.profile = profile;
+                done = true;
+                toRun = new ArrayList<ProfileCallback>(callbacks);
+                callbacks.clear();
+            }
+            latch.countDown();
+
+            for (ProfileCallback callback : toRun) {
+                dispatch(callback);
+            }
+        }
+
+        private void dispatch(final ProfileCallback callback) {
+            callbackExecutor.execute(new Runnable() {
+                public void run() {
+                    callback.onLookupComplete(profile);
+                }
+            });
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return false;
+        }
+
+        public boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        public GameProfile get() throws InterruptedException, ExecutionException {
+            latch.await();
+            return profile;
+        }
+
+        public GameProfile get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!latch.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return profile;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.bukkit.craftbukkit.util;
+
+import java.util.List;
+
+import net.minecraft.server.Chunk;
+import net.minecraft.server.Entity;
+import net.minecraft.server.EntityAmbient;
+import net.minecraft.server.EntityAnimal;
+import net.minecraft.server.EntityArrow;
+import net.minecraft.server.EntityCreature;
+import net.minecraft.server.EntityEnderCrystal;
+import net.minecraft.server.EntityEnderDragon;
+import net.minecraft.server.EntityFallingBlock;
+import net.minecraft.server.EntityFireball;
+import net.minecraft.server.EntityFireworks;
+import net.minecraft.server.EntityFishingHook;
+import net.minecraft.server.EntityHuman;
+import net.minecraft.server.EntityLiving;
+import net.minecraft.server.EntityProjectile;
+import net.minecraft.server.EntityTNTPrimed;
+import net.minecraft.server.EntityWaterAnimal;
+import net.minecraft.server.EntityWeather;
+import net.minecraft.server.EntityWither;
+import net.minecraft.server.IComplex;
+import net.minecraft.server.IMonster;
+import net.minecraft.server.MathHelper;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.World;
+
+import org.bukkit.craftbukkit.CraftServer;
+
+/**
+ * Decides which of a world's entities are close enough to a player to be
+ * ticked fully.
+ * <p>
+ * Every tick, the entities within the activation range of a player are
+ * marked active. Monsters, animals and everything else have their own range
+ * in bukkit.yml; a range of 0 keeps that category always active. Inactive
+ * entities get a full tick every inactive-interval ticks and only a cheap
+ * {@link Entity#inactiveTick()} in between. Players, projectiles, bosses and
+ * other entities whose state changes quickly are always active, and so are
+ * entities that are in water, burning, recently hurt, under potion effects,
+ * chasing a target, or riding or being ridden.
+ */
+public final class ActivationRange {
+    public static final int ALWAYS_ACTIVE = 0;
+    public static final int MONSTER = 1;
+    public static final int ANIMAL = 2;
+    public static final int MISC = 3;
+
+    private final World world;
+    private final int[] ranges = new int[4];
+    private int interval = 1;
+    private int active;
+    private int inactive;
+    private int lastActive;
+    private int lastInactive;
+
+    public ActivationRange(World world) {
+        this.world = world;
+    }
+
+    /**
+     * Gets the activation category of an entity.
+     *
+     * @param entity the entity
+     * @return one of {@link #ALWAYS_ACTIVE}, {@link #MONSTER}, {@link #ANIMAL}
+     *     or {@link #MISC}
+     */
+    public static int getType(Entity entity) {
+        if (entity instanceof EntityHuman || entity instanceof EntityProjectile || entity instanceof EntityArrow
+                || entity instanceof EntityFireball || entity instanceof EntityFishingHook || entity instanceof EntityWeather
+                || entity instanceof EntityEnderDragon || entity instanceof IComplex || entity instanceof EntityWither
+                || entity instanceof EntityTNTPrimed || entity instanceof EntityFallingBlock || entity instanceof EntityFireworks
+                || entity instanceof EntityEnderCrystal) {
+            return ALWAYS_ACTIVE;
+        }
+        if (entity instanceof IMonster) {
+            return MONSTER;
+        }
+        if (entity instanceof EntityAnimal || entity instanceof EntityAmbient || entity instanceof EntityWaterAnimal) {
+            return ANIMAL;
+        }
+        return MISC;
+    }
+
+    /**
+     * Marks the entities around the world's players active for this tick.
+     * Called once per tick before the world ticks its entities.
+     */
+    public void activateEntities() {
+        lastActive = active;
+        lastInactive = inactive;
+        active = 0;
+        inactive = 0;
+
+        CraftServer server = world.getServer();
+        ranges[MONSTER] = server.activationRangeMonsters;
+        ranges[ANIMAL] = server.activationRangeAnimals;
+        ranges[MISC] = server.activationRangeMisc;
+        interval = server.activationInactiveInterval;
+
+        int maxRange = Math.max(ranges[MONSTER], Math.max(ranges[ANIMAL], ranges[MISC]));
+        if (maxRange <= 0) {
+            return;
+        }
+
+        List players = world.players;
+        for (int i = 0; i < players.size(); i++) {
+            EntityHuman player = (EntityHuman) players.get(i);
+            int minX = MathHelper.floor(player.locX - maxRange) >> 4;
+            int maxX = MathHelper.floor(player.locX + maxRange) >> 4;
+            int minZ = MathHelper.floor(player.locZ - maxRange) >> 4;
+            int maxZ = MathHelper.floor(player.locZ + maxRange) >> 4;
+
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    if (world.isChunkLoaded(x, z)) {
+                        activateChunk(world.getChunkAt(x, z), player);
+                    }
+                }
+            }
+        }
+    }
+
+    private void activateChunk(Chunk chunk, EntityHuman player) {
+        int tick = MinecraftServer.currentTick;
+
+        for (List slice : chunk.entitySlices) {
+            for (int i = 0; i < slice.size(); i++) {
+                Entity entity = (Entity) slice.get(i);
+                int range = ranges[entity.activationType];
+                if (range > 0 && entity.activatedTick < tick
+                        && Math.abs(entity.locX - player.locX) <= range && Math.abs(entity.locZ - player.locZ) <= range) {
+                    entity.activatedTick = tick;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets whether an entity should be ticked fully this tick.
+     *
+     * @param entity the entity
+     * @return false if the entity only gets an inactive tick
+     */
+    public boolean checkIfActive(Entity entity) {
+        int tick = MinecraftServer.currentTick;
+        boolean isActive = ranges[entity.activationType] <= 0 || entity.activatedTick >= tick
+                || (tick - entity.activatedTick) % interval == 0 || isImmune(entity);
+
+        if (isActive) {
+            active++;
+        } else {
+            inactive++;
+        }
+        return isActive;
+    }
+
+    private static boolean isImmune(Entity entity) {
+        if (entity.inWater || entity.fireTicks > 0 || entity.vehicle != null || entity.passenger != null) {
+            return true;
+        }
+        if (entity instanceof EntityLiving) {
+            EntityLiving living = (EntityLiving) entity;
+            if (living.hurtTicks > 0 || !living.effects.isEmpty()) {
+                return true;
+            }
+        }
+        return entity instanceof EntityCreature && ((EntityCreature) entity).target != null;
+    }
+
+    /**
+     * Gets the number of entity ticks in the last complete tick that were
+     * full ticks.
+     *
+     * @return the number of active entities
+     */
+    public int getActiveCount() {
+        return lastActive;
+    }
+
+    /**
+     * Gets the number of entity ticks in the last complete tick that were
+     * inactive ticks.
+     *
+     * @return the number of inactive entities
+     */
+    public int getInactiveCount() {
+        return lastInactive;
+    }
+}
@@ -0,0 +1,351 @@
+package org.bukkit.craftbukkit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.minecraft.server.Block;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.EnumSkyBlock;
+import net.minecraft.server.WorldServer;
+
+import org.bukkit.BlockChangeDelegate;
+import org.bukkit.block.BlockState;
+import org.bukkit.craftbukkit.block.CraftBlockState;
+
+/**
+ * Changes many blocks of a world at once.
+ * <p>
+ * Blocks are written straight into the chunk sections as they are set, so
+ * reads through the batch or the world see them right away. Block place
+ * and break hooks do not run and nothing is dropped; tile entities are
+ * removed and created as the block type changes. Everything else waits for
+ * {@link #apply(boolean)}, which relights each changed column once, then
+ * rechecks light only around the surface of the changed volume. Of the
+ * blocks whose opacity changed, those next to a block whose opacity did not
+ * change and the layer just under them are rechecked; the ones further in
+ * are darkened and lit by the light spreading in from there. Light sources
+ * in the volume are rechecked too. It then sends each changed chunk to its players as
+ * one packet, and optionally applies physics to the changed blocks. A
+ * block set several times counts once.
+ */
+public class BlockChangeBatch implements BlockChangeDelegate {
+    // Chunks with this many changes are resent by section, like PlayerChunk does
+    private static final int RESEND_SECTIONS = 64;
+
+    private final WorldServer world;
+    private final LongObjectHashMap<ChunkChanges> chunks = new LongObjectHashMap<ChunkChanges>();
+    private final List<ChunkChanges> changed = new ArrayList<ChunkChanges>();
+    private final List<BlockState> states = new ArrayList<BlockState>();
+    private ChunkChanges last;
+    private int size;
+
+    public BlockChangeBatch(WorldServer world) {
+        this.world = world;
+    }
+
+    public boolean setRawTypeId(int x, int y, int z, int typeId) {
+        return setRawTypeIdAndData(x, y, z, typeId, 0);
+    }
+
+    public boolean setRawTypeIdAndData(int x, int y, int z, int typeId, int data) {
+        if (y < 0 || y >= world.getHeight()) {
+            return false;
+        }
+
+        ChunkChanges changes = getChanges(x >> 4, z >> 4);
+        boolean newSection = changes.chunk.i()[y >> 4] == null;
+        Block old = changes.chunk.setTypeRaw(x & 15, y, z & 15, CraftMagicNumbers.getBlock(typeId), data & 15);
+        if (old == null) {
+            return false;
+        }
+
+        if (changes.add(x & 15, y, z & 15, old)) {
+            size++;
+        }
+        changes.newSections |= newSection;
+        return true;
+    }
+
+    public boolean setTypeId(int x, int y, int z, int typeId) {
+        return setRawTypeId(x, y, z, typeId);
+    }
+
+    public boolean setTypeIdAndData(int x, int y, int z, int typeId, int data) {
+        return setRawTypeIdAndData(x, y, z, typeId, data);
+    }
+
+    /**
+     * Sets a block to the type and data of a block state. States that carry
+     * more than type and data, like signs and chests, are updated again
+     * when the batch is applied, once their tile entities exist.
+     *
+     * @param state the block state, of this batch's world
+     * @return true if the block changed
+     */
+    public boolean setBlockState(BlockState state) {
+        boolean result = setRawTypeIdAndData(state.getX(), state.getY(), state.getZ(), state.getTypeId(), state.getRawData());
+        if (state.getClass() != CraftBlockState.class) {
+            states.add(state);
+        }
+        return result;
+    }
+
+    public int getTypeId(int x, int y, int z) {
+        return CraftMagicNumbers.getId(world.getType(x, y, z));
+    }
+
+    public int getHeight() {
+        return world.getHeight();
+    }
+
+    public boolean isEmpty(int x, int y, int z) {
+        return world.isEmpty(x, y, z);
+    }
+
+    /**
+     * Gets the number of block changes waiting to be applied.
+     *
+     * @return the number of changes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Relights the changed blocks, sends the changed chunks to their players
+     * and clears the batch.
+     *
+     * @param applyPhysics whether to run place hooks and physics for the
+     *     changed blocks afterwards
+     */
+    public void apply(boolean applyPhysics) {
+        // Each step must be done for every chunk before the next one looks across chunk edges
+        for (ChunkChanges changes : changed) {
+            changes.markOpacityChanges();
+        }
+        for (ChunkChanges changes : changed) {
+            changes.markSurface();
+        }
+        for (ChunkChanges changes : changed) {
+            changes.darkenInterior();
+        }
+        for (ChunkChanges changes : changed) {
+            changes.relight();
+        }
+        for (ChunkChanges changes : changed) {
+            changes.send();
+        }
+        for (BlockState state : states) {
+            state.update(true, false);
+        }
+        if (applyPhysics) {
+            for (ChunkChanges changes : changed) {
+                changes.applyPhysics();
+            }
+        }
+
+        chunks.clear();
+        changed.clear();
+        states.clear();
+        last = null;
+        size = 0;
+    }
+
+    private ChunkChanges getChanges(int chunkX, int chunkZ) {
+        if (last != null && last.chunk.locX == chunkX && last.chunk.locZ == chunkZ) {
+            return last;
+        }
+
+        long key = LongHash.toLong(chunkX, chunkZ);
+        ChunkChanges changes = chunks.get(key);
+        if (changes == null) {
+            changes = new ChunkChanges(world.getChunkAt(chunkX, chunkZ));
+            chunks.put(key, changes);
+            changed.add(changes);
+        }
+        last = changes;
+        return changes;
+    }
+
+    private final class ChunkChanges {
+        final Chunk chunk;
+        // Positions packed like PlayerChunk does, x << 12 | z << 8 | y
+        short[] positions = new short[16];
+        Block[] oldBlocks = new Block[16];
+        int count;
+        // Bit sets over the packed positions: the blocks changed, those whose opacity changed,
+        // and of those the ones on the surface of the changed volume and the ones just under it
+        final long[] changedBits = new long[1024];
+        final long[] opacityBits = new long[1024];
+        final long[] surfaceBits = new long[1024];
+        final long[] innerBits = new long[1024];
+        int sections;
+        boolean newSections;
+        // Highest changed y per column, -1 if unchanged
+        final int[] tops = new int[256];
+
+        ChunkChanges(Chunk chunk) {
+            this.chunk = chunk;
+            Arrays.fill(tops, -1);
+        }
+
+        boolean add(int x, int y, int z, Block old) {
+            int position = x << 12 | z << 8 | y;
+            if (isSet(changedBits, position)) {
+                // Set before, keep the block that was there before the batch
+                return false;
+            }
+            set(changedBits, position);
+
+            if (count == positions.length) {
+                short[] grown = new short[count << 1];
+                System.arraycopy(positions, 0, grown, 0, count);
+                positions = grown;
+                oldBlocks = Java15Compat.Arrays_copyOf(oldBlocks, count << 1);
+            }
+            positions[count] = (short) position;
+            oldBlocks[count++] = old;
+            sections |= 1 << (y >> 4);
+
+            int column = z << 4 | x;
+            if (y > tops[column]) {
+                tops[column] = y;
+            }
+            return true;
+        }
+
+        void markOpacityChanges() {
+            for (int i = 0; i < count; i++) {
+                if (world.getType(getX(i), getY(i), getZ(i)).k() != oldBlocks[i].k()) {
+                    set(opacityBits, positions[i] & 0xFFFF);
+                }
+            }
+        }
+
+        // The surface of the changed volume: blocks whose opacity changed next to one whose opacity did not
+        void markSurface() {
+            for (int i = 0; i < count; i++) {
+                int position = positions[i] & 0xFFFF;
+                int x = getX(i);
+                int y = getY(i);
+                int z = getZ(i);
+                if (isSet(opacityBits, position) && (!opacityChanged(x - 1, y, z) || !opacityChanged(x + 1, y, z)
+                        || !opacityChanged(x, y - 1, z) || !opacityChanged(x, y + 1, z)
+                        || !opacityChanged(x, y, z - 1) || !opacityChanged(x, y, z + 1))) {
+                    set(surfaceBits, position);
+                }
+            }
+        }
+
+        // Inside the volume the old light is stale, start from dark; the layer just under the surface is rechecked so light spreads in from there
+        void darkenInterior() {
+            for (int i = 0; i < count; i++) {
+                int position = positions[i] & 0xFFFF;
+                if (!isSet(opacityBits, position) || isSet(surfaceBits, position)) {
+                    continue;
+                }
+
+                int x = getX(i);
+                int y = getY(i);
+                int z = getZ(i);
+                chunk.a(EnumSkyBlock.SKY, x & 15, y, z & 15, 0);
+                chunk.a(EnumSkyBlock.BLOCK, x & 15, y, z & 15, 0);
+                if (onSurface(x - 1, y, z) || onSurface(x + 1, y, z)
+                        || onSurface(x, y - 1, z) || onSurface(x, y + 1, z)
+                        || onSurface(x, y, z - 1) || onSurface(x, y, z + 1)) {
+                    set(innerBits, position);
+                }
+            }
+        }
+
+        void relight() {
+            if (newSections) {
+                // New sections start out dark, light the whole chunk from the top like the chunk does itself
+                chunk.initLighting();
+            }
+
+            for (int column = 0; column < 256; column++) {
+                if (tops[column] >= 0) {
+                    chunk.relightColumn(column & 15, tops[column], column >> 4);
+                }
+            }
+
+            for (int i = 0; i < count; i++) {
+                int x = getX(i);
+                int y = getY(i);
+                int z = getZ(i);
+                Block block = world.getType(x, y, z);
+                int position = positions[i] & 0xFFFF;
+                if (isSet(surfaceBits, position) || isSet(innerBits, position)) {
+                    // Sky light moves under overhangs and in caves too, recheck both like a single block change does
+                    world.t(x, y, z);
+                } else if (isSet(opacityBits, position) ? block.m() > 0 : block.m() != oldBlocks[i].m()) {
+                    // Light sources, including the ones darkened inside the volume
+                    world.c(EnumSkyBlock.BLOCK, x, y, z);
+                }
+            }
+        }
+
+        private boolean opacityChanged(int x, int y, int z) {
+            ChunkChanges changes = changesAt(x, y, z);
+            return changes != null && isSet(changes.opacityBits, (x & 15) << 12 | (z & 15) << 8 | y);
+        }
+
+        private boolean onSurface(int x, int y, int z) {
+            ChunkChanges changes = changesAt(x, y, z);
+            return changes != null && isSet(changes.surfaceBits, (x & 15) << 12 | (z & 15) << 8 | y);
+        }
+
+        private ChunkChanges changesAt(int x, int y, int z) {
+            if (y < 0 || y >= 256) {
+                return null;
+            }
+            if (x >> 4 == chunk.locX && z >> 4 == chunk.locZ) {
+                return this;
+            }
+            return chunks.get(LongHash.toLong(x >> 4, z >> 4));
+        }
+
+        void send() {
+            if (count >= RESEND_SECTIONS) {
+                world.getPlayerChunkMap().flagSectionsDirty(chunk.locX, chunk.locZ, sections);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    world.notify(getX(i), getY(i), getZ(i));
+                }
+            }
+        }
+
+        void applyPhysics() {
+            for (int i = 0; i < count; i++) {
+                int x = getX(i);
+                int y = getY(i);
+                int z = getZ(i);
+                Block block = world.getType(x, y, z);
+                block.onPlace(world, x, y, z);
+                world.notifyAndUpdatePhysics(x, y, z, chunk, oldBlocks[i], block, 1);
+            }
+        }
+
+        private boolean isSet(long[] bits, int position) {
+            return (bits[position >> 6] & 1L << position) != 0;
+        }
+
+        private void set(long[] bits, int position) {
+            bits[position >> 6] |= 1L << position;
+        }
+
+        int getX(int i) {
+            return (chunk.locX << 4) + (positions[i] >> 12 & 15);
+        }
+
+        int getY(int i) {
+            return positions[i] & 255;
+        }
+
+        int getZ(int i) {
+            return (chunk.locZ << 4) + (positions[i] >> 8 & 15);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package org.bukkit.craftbukkit.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.server.AxisAlignedBB;
+import net.minecraft.server.Block;
+import net.minecraft.server.Blocks;
+import net.minecraft.server.Entity;
+import net.minecraft.server.World;
+
+/**
+ * Caches the collision boxes of the blocks in a world's loaded chunks, one
+ * array per 16x16x16 chunk section, so entity movement does not ask every
+ * block in its path to build new boxes each tick.
+ * <p>
+ * A block's shape may depend on its neighbours (fences, panes, stairs,
+ * doors), so a block change drops the cached shapes of the block and the six
+ * blocks around it. Blocks whose shape depends on the colliding entity or on
+ * tile entity state are never cached. The cached boxes are shared and must
+ * not be modified.
+ */
+public final class CollisionShapeCache {
+    private static final AxisAlignedBB[] NO_SHAPE = new AxisAlignedBB[0];
+    private static final AxisAlignedBB[] UNCACHEABLE = new AxisAlignedBB[0];
+    private static final AxisAlignedBB EVERYTHING = AxisAlignedBB.a(-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+
+    private final World world;
+    private final LongObjectHashMap<AxisAlignedBB[][][]> chunks = new LongObjectHashMap<AxisAlignedBB[][][]>();
+    private final List<AxisAlignedBB> scratch = new ArrayList<AxisAlignedBB>();
+    private long lastKey = Long.MIN_VALUE;
+    private AxisAlignedBB[][][] lastChunk;
+
+    public CollisionShapeCache(World world) {
+        this.world = world;
+    }
+
+    /**
+     * Adds the collision boxes of the block at the given position that
+     * intersect the given box to the list, like
+     * {@link Block#a(World, int, int, int, AxisAlignedBB, List, Entity)}.
+     *
+     * @param x the block x coordinate
+     * @param y the block y coordinate
+     * @param z the block z coordinate
+     * @param mask the box to collide with
+     * @param list the list to add to
+     * @param entity the colliding entity, may be null
+     */
+    public void collect(int x, int y, int z, AxisAlignedBB mask, List list, Entity entity) {
+        if (y < 0 || y >= 256) {
+            this.world.getType(x, y, z).a(this.world, x, y, z, mask, list, entity);
+            return;
+        }
+
+        AxisAlignedBB[] section = getSection(x >> 4, y >> 4, z >> 4);
+        int index = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+        AxisAlignedBB[] shape = section[index];
+
+        if (shape == null) {
+            Block block = this.world.getType(x, y, z);
+            shape = isCacheable(block) ? compute(block, x, y, z) : UNCACHEABLE;
+            section[index] = shape;
+        }
+
+        if (shape == UNCACHEABLE) {
+            this.world.getType(x, y, z).a(this.world, x, y, z, mask, list, entity);
+            return;
+        }
+
+        for (int i = 0; i < shape.length; i++) {
+            if (mask.b(shape[i])) {
+                list.add(shape[i]);
+            }
+        }
+    }
+
+    /**
+     * Drops the cached shapes of a changed block and its neighbours.
+     *
+     * @param x the block x coordinate
+     * @param y the block y coordinate
+     * @param z the block z coordinate
+     */
+    public void invalidate(int x, int y, int z) {
+        if (this.chunks.isEmpty()) {
+            return;
+        }
+
+        clear(x, y, z);
+        clear(x - 1, y, z);
+        clear(x + 1, y, z);
+        clear(x, y - 1, z);
+        clear(x, y + 1, z);
+        clear(x, y, z - 1);
+        clear(x, y, z + 1);
+    }
+
+    /**
+     * Drops the cached shapes of an unloaded chunk.
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     */
+    public void removeChunk(int chunkX, int chunkZ) {
+        long key = LongHash.toLong(chunkX, chunkZ);
+        this.chunks.remove(key);
+        if (this.lastKey == key) {
+            this.lastKey = Long.MIN_VALUE;
+            this.lastChunk = null;
+        }
+    }
+
+    private void clear(int x, int y, int z) {
+        if (y < 0 || y >= 256) {
+            return;
+        }
+
+        AxisAlignedBB[][][] chunk = getChunk(x >> 4, z >> 4, false);
+        if (chunk == null) {
+            return;
+        }
+
+        AxisAlignedBB[][] section = chunk[y >> 4];
+        if (section != null) {
+            section[(y & 15) << 8 | (z & 15) << 4 | (x & 15)] = null;
+        }
+    }
+
+    private AxisAlignedBB[] getSection(int chunkX, int sectionY, int chunkZ) {
+        AxisAlignedBB[][][] chunk = getChunk(chunkX, chunkZ, true);
+        AxisAlignedBB[][] section = chunk[sectionY];
+        if (section == null) {
+            section = chunk[sectionY] = new AxisAlignedBB[4096][];
+        }
+        return section;
+    }
+
+    private AxisAlignedBB[][][] getChunk(int chunkX, int chunkZ, boolean create) {
+        long key = LongHash.toLong(chunkX, chunkZ);
+        if (key == this.lastKey) {
+            return this.lastChunk;
+        }
+
+        AxisAlignedBB[][][] chunk = this.chunks.get(key);
+        if (chunk == null) {
+            if (!create) {
+                return null;
+            }
+            chunk = new AxisAlignedBB[16][][];
+            this.chunks.put(key, chunk);
+        }
+
+        this.lastKey = key;
+        this.lastChunk = chunk;
+        return chunk;
+    }
+
+    private AxisAlignedBB[] compute(Block block, int x, int y, int z) {
+        this.scratch.clear();
+        block.a(this.world, x, y, z, EVERYTHING, this.scratch, null);
+        if (this.scratch.isEmpty()) {
+            return NO_SHAPE;
+        }
+        return this.scratch.toArray(new AxisAlignedBB[this.scratch.size()]);
+    }
+
+    private static boolean isCacheable(Block block) {
+        // Lily pads let boats through, moving pistons change shape as their tile entity extends
+        return block != Blocks.WATER_LILY && block != Blocks.PISTON_MOVING;
+    }
+}
@@ -0,0 +1,106 @@
+package org.bukkit.craftbukkit.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import net.minecraft.server.NBTCompressedStreamTools;
+import net.minecraft.server.NBTTagCompound;
+
+/**
+ * Caches the gzipped form of item tags written to packets.
+ * <p>
+ * Items are copied into the packets that carry them, so the cache is keyed
+ * by tag contents: any tag equal to one compressed before reuses its bytes,
+ * and a changed tag simply misses. Compression reuses a deflater and buffers
+ * per thread. The returned arrays are shared and must not be modified.
+ */
+public final class CompressedTagCache {
+    private static final int MAX_ENTRIES = 4096;
+    private static final Map<NBTTagCompound, byte[]> cache = new ConcurrentHashMap<NBTTagCompound, byte[]>();
+    private static final ThreadLocal<Compressor> compressors = new ThreadLocal<Compressor>() {
+        @Override
+        protected Compressor initialValue() {
+            return new Compressor();
+        }
+    };
+
+    private CompressedTagCache() {}
+
+    /**
+     * Gets a tag gzipped like {@link NBTCompressedStreamTools#a(NBTTagCompound)}.
+     *
+     * @param tag the tag
+     * @return the compressed tag
+     */
+    public static byte[] compress(NBTTagCompound tag) {
+        byte[] bytes = cache.get(tag);
+        if (bytes == null) {
+            bytes = compressors.get().compress(tag);
+            if (cache.size() >= MAX_ENTRIES) {
+                cache.clear();
+            }
+            // Key on a copy, the caller's tag may change later
+            cache.put((NBTTagCompound) tag.clone(), bytes);
+        }
+        return bytes;
+    }
+
+    private static final class Compressor {
+        private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+        private final Buffer raw = new Buffer();
+        private final DataOutputStream rawData = new DataOutputStream(raw);
+        private final Buffer compressed = new Buffer();
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private final byte[] chunk = new byte[1024];
+
+        byte[] compress(NBTTagCompound tag) {
+            raw.reset();
+            try {
+                NBTCompressedStreamTools.a(tag, (DataOutput) rawData);
+                rawData.flush();
+            } catch (IOException ex) {
+                // Writing to memory does not fail, but if it does leave it to the vanilla path
+                return NBTCompressedStreamTools.a(tag);
+            }
+
+            byte[] input = raw.buffer();
+            int length = raw.size();
+
+            deflater.reset();
+            deflater.setInput(input, 0, length);
+            deflater.finish();
+            crc.reset();
+            crc.update(input, 0, length);
+
+            compressed.reset();
+            compressed.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            writeIntLE((int) crc.getValue());
+            writeIntLE(length);
+            return compressed.toByteArray();
+        }
+
+        private void writeIntLE(int i) {
+            compressed.write(i & 0xFF);
+            compressed.write(i >>> 8 & 0xFF);
+            compressed.write(i >>> 16 & 0xFF);
+            compressed.write(i >>> 24 & 0xFF);
+        }
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
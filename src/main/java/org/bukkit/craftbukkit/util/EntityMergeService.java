@@ -0,0 +1,205 @@
+package org.bukkit.craftbukkit.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.minecraft.server.AxisAlignedBB;
+import net.minecraft.server.Entity;
+import net.minecraft.server.EntityExperienceOrb;
+import net.minecraft.server.EntityItem;
+import net.minecraft.server.MathHelper;
+import net.minecraft.server.World;
+
+import org.bukkit.craftbukkit.CraftServer;
+
+/**
+ * Merges item stacks and experience orbs lying close to each other.
+ * <p>
+ * Instead of every item searching its own neighbourhood, items and orbs
+ * queue themselves while they tick and the world merges the queue once per
+ * tick. Queued entities are grouped per chunk section; each group does a
+ * single entity lookup and matches candidates through a grid whose cells
+ * are as wide as the merge reach, so an item only looks at the entities in
+ * the nine cells around it.
+ * <p>
+ * The merge radius for items and orbs and the number of queued entities
+ * handled per section and tick come from bukkit.yml. Entities over the cap
+ * are handled on a later tick. An entity is queued at most once, however
+ * often it asks before the queue is merged.
+ */
+public final class EntityMergeService {
+    private final World world;
+    private List<EntityItem> items = new ArrayList<EntityItem>();
+    private List<EntityExperienceOrb> orbs = new ArrayList<EntityExperienceOrb>();
+    private final Set<Entity> queued = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+
+    public EntityMergeService(World world) {
+        this.world = world;
+    }
+
+    public void queue(EntityItem item) {
+        if (world.getServer().itemMergeRadius >= 0 && queued.add(item)) {
+            items.add(item);
+        }
+    }
+
+    public void queue(EntityExperienceOrb orb) {
+        if (world.getServer().expMergeRadius > 0 && queued.add(orb)) {
+            orbs.add(orb);
+        }
+    }
+
+    /**
+     * Merges everything queued this tick.
+     */
+    public void run() {
+        CraftServer server = world.getServer();
+        // Entities put back for a later tick are marked queued again as they are deferred
+        queued.clear();
+
+        if (!items.isEmpty()) {
+            List<EntityItem> batch = items;
+            items = new ArrayList<EntityItem>();
+            merge(batch, EntityItem.class, server.itemMergeRadius, server.mergeMaxPerSection, items);
+        }
+
+        if (!orbs.isEmpty()) {
+            List<EntityExperienceOrb> batch = orbs;
+            orbs = new ArrayList<EntityExperienceOrb>();
+            merge(batch, EntityExperienceOrb.class, server.expMergeRadius, server.mergeMaxPerSection, orbs);
+        }
+    }
+
+    private <T extends Entity> void merge(List<T> batch, Class<T> type, double radius, int maxPerSection, List<T> deferred) {
+        Map<Long, List<T>> sections = partition(batch, maxPerSection, deferred);
+
+        // Item and orb boxes are at most half a block wide, so anything within reach is in a neighbouring cell
+        double cellSize = radius + 0.5D;
+        Map<Long, List<T>> cells = new HashMap<Long, List<T>>();
+
+        for (List<T> section : sections.values()) {
+            AxisAlignedBB bounds = null;
+            for (T entity : section) {
+                bounds = bounds == null ? entity.boundingBox.clone() : union(bounds, entity.boundingBox);
+            }
+
+            List<T> candidates = world.a(type, bounds.grow(radius, 0.0D, radius));
+            if (candidates.size() < 2) {
+                continue;
+            }
+
+            cells.clear();
+            for (T candidate : candidates) {
+                long cell = LongHash.toLong(MathHelper.floor(candidate.locX / cellSize), MathHelper.floor(candidate.locZ / cellSize));
+                List<T> list = cells.get(cell);
+                if (list == null) {
+                    list = new ArrayList<T>(4);
+                    cells.put(cell, list);
+                }
+                list.add(candidate);
+            }
+
+            for (T entity : section) {
+                mergeNearby(entity, cells, cellSize, radius);
+            }
+        }
+    }
+
+    /**
+     * Groups a batch of queued entities by chunk section, putting the
+     * entities over the per-section cap back on the queue.
+     */
+    <T extends Entity> Map<Long, List<T>> partition(List<T> batch, int maxPerSection, List<T> deferred) {
+        Map<Long, List<T>> sections = new LinkedHashMap<Long, List<T>>();
+        for (T entity : batch) {
+            if (entity.dead) {
+                continue;
+            }
+
+            long key = sectionKey(entity);
+            List<T> section = sections.get(key);
+            if (section == null) {
+                section = new ArrayList<T>();
+                sections.put(key, section);
+            }
+
+            if (maxPerSection > 0 && section.size() >= maxPerSection) {
+                deferred.add(entity);
+                this.queued.add(entity);
+            } else {
+                section.add(entity);
+            }
+        }
+
+        return sections;
+    }
+
+    boolean isQueued(Entity entity) {
+        return queued.contains(entity);
+    }
+
+    private <T extends Entity> void mergeNearby(T entity, Map<Long, List<T>> cells, double cellSize, double radius) {
+        int cellX = MathHelper.floor(entity.locX / cellSize);
+        int cellZ = MathHelper.floor(entity.locZ / cellSize);
+        AxisAlignedBB reach = entity.boundingBox.grow(radius, 0.0D, radius);
+
+        for (int x = cellX - 1; x <= cellX + 1; x++) {
+            for (int z = cellZ - 1; z <= cellZ + 1; z++) {
+                List<T> cell = cells.get(LongHash.toLong(x, z));
+                if (cell == null) {
+                    continue;
+                }
+
+                for (int i = 0; i < cell.size(); i++) {
+                    if (entity.dead) {
+                        return;
+                    }
+
+                    T other = cell.get(i);
+                    if (other != entity && !other.dead && reach.b(other.boundingBox)) {
+                        if (entity instanceof EntityItem) {
+                            ((EntityItem) entity).a((EntityItem) other);
+                        } else {
+                            mergeOrbs((EntityExperienceOrb) entity, (EntityExperienceOrb) other);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void mergeOrbs(EntityExperienceOrb orb, EntityExperienceOrb other) {
+        // The older orb absorbs the younger one, like items keep the fuller stack
+        if (other.b < orb.b) {
+            EntityExperienceOrb swap = orb;
+            orb = other;
+            other = swap;
+        }
+
+        other.value += orb.value;
+        orb.die();
+    }
+
+    private static long sectionKey(Entity entity) {
+        int x = MathHelper.floor(entity.locX) >> 4;
+        int y = MathHelper.floor(entity.locY) >> 4;
+        int z = MathHelper.floor(entity.locZ) >> 4;
+        return LongHash.toLong(x, (z << 4) | (y & 15));
+    }
+
+    private static AxisAlignedBB union(AxisAlignedBB bounds, AxisAlignedBB other) {
+        bounds.a = Math.min(bounds.a, other.a);
+        bounds.b = Math.min(bounds.b, other.b);
+        bounds.c = Math.min(bounds.c, other.c);
+        bounds.d = Math.max(bounds.d, other.d);
+        bounds.e = Math.max(bounds.e, other.e);
+        bounds.f = Math.max(bounds.f, other.f);
+        return bounds;
+    }
+}
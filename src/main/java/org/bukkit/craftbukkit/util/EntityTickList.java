@@ -0,0 +1,221 @@
+package org.bukkit.craftbukkit.util;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraft.server.AxisAlignedBB;
+import net.minecraft.server.Entity;
+
+/**
+ * The list of entities a world ticks. Every entity remembers its slot, so
+ * lookups and removals are constant time; a removal fills the hole with the
+ * last entity instead of shifting the rest of the list down.
+ * <p>
+ * While the world ticks its entities it advances {@link #tickPosition}, and
+ * removals keep every entity ahead of the cursor unticked and every entity
+ * behind it ticked, including an entity removing itself during its own tick.
+ * The order of the entities is not preserved.
+ * <p>
+ * The list also counts the entities that other entities can collide with,
+ * boats and minecarts in vanilla, so collision checks can skip looking for
+ * them when there are none, and files them by type in an
+ * {@link EntityTypeIndex} for entity queries.
+ */
+public final class EntityTickList extends AbstractList<Entity> implements RandomAccess {
+    private static final Map<Class<?>, Boolean> collidableClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+    private static final Map<Class<?>, Boolean> collidingClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    private Entity[] data = new Entity[64];
+    private int size;
+    private int collidable;
+    private final EntityTypeIndex types = new EntityTypeIndex();
+    // The entity being ticked, or -1 outside of the entity pass
+    public int tickPosition = -1;
+
+    @Override
+    public Entity get(int index) {
+        rangeCheck(index);
+        return data[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Appends an entity. An entity already in the list is not added again.
+     *
+     * @param entity the entity
+     * @return true if the entity was added
+     */
+    @Override
+    public boolean add(Entity entity) {
+        if (indexOf(entity) != -1) {
+            return false;
+        }
+
+        if (size == data.length) {
+            data = Java15Compat.Arrays_copyOf(data, size << 1);
+        }
+        entity.tickListIndex = size;
+        data[size++] = entity;
+        if (isCollidable(entity)) {
+            collidable++;
+        }
+        types.add(entity);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Gets whether any entity in the list may have a collision box other
+     * entities collide with.
+     *
+     * @return true if there is at least one such entity
+     */
+    public boolean hasCollidableEntities() {
+        return collidable > 0;
+    }
+
+    /**
+     * Gets the entities of this list filed by type.
+     *
+     * @return the type index
+     */
+    public EntityTypeIndex getTypeIndex() {
+        return types;
+    }
+
+    /**
+     * Gets whether an entity collides with other entities, even those
+     * without a collision box of their own.
+     *
+     * @param entity the entity, may be null
+     * @return true if the entity's class overrides {@link Entity#h(Entity)}
+     */
+    public static boolean collidesWithEntities(Entity entity) {
+        return entity != null && overrides(collidingClasses, entity.getClass(), "h", Entity.class);
+    }
+
+    private static boolean isCollidable(Entity entity) {
+        return overrides(collidableClasses, entity.getClass(), "I");
+    }
+
+    private static boolean overrides(Map<Class<?>, Boolean> cache, Class<?> clazz, String name, Class<?>... parameterTypes) {
+        Boolean result = cache.get(clazz);
+        if (result == null) {
+            result = Boolean.FALSE;
+            for (Class<?> current = clazz; current != Entity.class && current != null; current = current.getSuperclass()) {
+                try {
+                    if (current.getDeclaredMethod(name, parameterTypes).getReturnType() == AxisAlignedBB.class) {
+                        result = Boolean.TRUE;
+                        break;
+                    }
+                } catch (NoSuchMethodException ex) {
+                    // Keep looking in the superclass
+                }
+            }
+            cache.put(clazz, result);
+        }
+        return result;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Entity)) {
+            return -1;
+        }
+
+        int index = ((Entity) o).tickListIndex;
+        return index >= 0 && index < size && data[index] == o ? index : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+
+    @Override
+    public Entity remove(int index) {
+        rangeCheck(index);
+
+        Entity removed = data[index];
+        int last = --size;
+        if (index < tickPosition) {
+            // Already ticked, move the current entity into the hole and the unticked tail entity onto the cursor
+            move(tickPosition, index);
+            move(last, tickPosition);
+            tickPosition--;
+        } else {
+            if (index == tickPosition) {
+                tickPosition--;
+            }
+            move(last, index);
+        }
+
+        data[last] = null;
+        removed.tickListIndex = -1;
+        if (isCollidable(removed)) {
+            collidable--;
+        }
+        types.remove(removed);
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index == -1) {
+            return false;
+        }
+
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            changed |= remove(o);
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            data[i].tickListIndex = -1;
+            data[i] = null;
+        }
+        size = 0;
+        collidable = 0;
+        types.clear();
+        tickPosition = -1;
+        modCount++;
+    }
+
+    private void move(int from, int to) {
+        if (from != to) {
+            Entity entity = data[from];
+            entity.tickListIndex = to;
+            data[to] = entity;
+        }
+    }
+
+    private void rangeCheck(int index) {
+        if (index >= size || index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
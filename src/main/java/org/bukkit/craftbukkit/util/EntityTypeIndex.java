@@ -0,0 +1,165 @@
+package org.bukkit.craftbukkit.util;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraft.server.AxisAlignedBB;
+import net.minecraft.server.Chunk;
+import net.minecraft.server.Entity;
+import net.minecraft.server.MathHelper;
+import net.minecraft.server.World;
+
+/**
+ * Files the entities of a world by type, so queries for a Bukkit entity
+ * class only look at the entities that can match it.
+ * <p>
+ * Entities are bucketed by their NMS class. Every NMS class maps to a
+ * single Bukkit entity class, which is looked up from the first entity of
+ * that class a query comes across and remembered; a query then tests each
+ * bucket instead of each entity. The only entities whose Bukkit class
+ * depends on more than their NMS class are the parts of complex entities,
+ * and those never join a world's entity list or a chunk.
+ * <p>
+ * Chunks keep a count of their entities per NMS class next to their entity
+ * slices, so area queries skip the chunks without a matching entity.
+ */
+public final class EntityTypeIndex {
+    private static final Map<Class<?>, Class<?>> bukkitClasses = new ConcurrentHashMap<Class<?>, Class<?>>();
+
+    private final Map<Class<?>, Set<Entity>> buckets = new HashMap<Class<?>, Set<Entity>>();
+
+    public void add(Entity entity) {
+        Set<Entity> bucket = buckets.get(entity.getClass());
+        if (bucket == null) {
+            bucket = new LinkedHashSet<Entity>();
+            buckets.put(entity.getClass(), bucket);
+        }
+        bucket.add(entity);
+    }
+
+    public void remove(Entity entity) {
+        Set<Entity> bucket = buckets.get(entity.getClass());
+        if (bucket != null) {
+            bucket.remove(entity);
+        }
+    }
+
+    public void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * Adds the Bukkit entities of every entity that is an instance of one of
+     * the given classes to a list.
+     *
+     * @param classes the Bukkit entity classes or interfaces to look for
+     * @param list the list to add to
+     */
+    public void collect(Class<?>[] classes, List list) {
+        for (Set<Entity> bucket : buckets.values()) {
+            if (bucket.isEmpty() || !matches(bucket.iterator().next(), classes)) {
+                continue;
+            }
+
+            for (Entity entity : bucket) {
+                org.bukkit.entity.Entity bukkitEntity = entity.getBukkitEntity();
+                if (bukkitEntity != null) {
+                    list.add(bukkitEntity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the Bukkit entities whose bounding box intersects a box to a
+     * list, looking only at the entity slices of the loaded chunks the box
+     * covers, and only in chunks that hold a matching entity.
+     *
+     * @param world the world to look in
+     * @param box the box
+     * @param classes the Bukkit entity classes or interfaces to look for
+     * @param list the list to add to
+     */
+    public static void collect(World world, AxisAlignedBB box, Class<?>[] classes, List list) {
+        // Entities are filed by position, so reach out for bounding boxes overlapping from neighbouring chunks
+        int minX = MathHelper.floor((box.a - 2.0D) / 16.0D);
+        int maxX = MathHelper.floor((box.d + 2.0D) / 16.0D);
+        int minZ = MathHelper.floor((box.c - 2.0D) / 16.0D);
+        int maxZ = MathHelper.floor((box.f + 2.0D) / 16.0D);
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                if (world.isChunkLoaded(x, z)) {
+                    collect(world.getChunkAt(x, z), box, classes, list);
+                }
+            }
+        }
+    }
+
+    private static void collect(Chunk chunk, AxisAlignedBB box, Class<?>[] classes, List list) {
+        boolean found = false;
+        for (Map.Entry<Class<?>, int[]> entry : chunk.entityTypeCounts.entrySet()) {
+            // A class no query has seen yet may match, the entity itself tells below
+            if (entry.getValue()[0] > 0 && (!bukkitClasses.containsKey(entry.getKey()) || matches(entry.getKey(), classes))) {
+                found = true;
+                break;
+            }
+        }
+        if (!found) {
+            return;
+        }
+
+        int minY = MathHelper.a(MathHelper.floor((box.b - 2.0D) / 16.0D), 0, chunk.entitySlices.length - 1);
+        int maxY = MathHelper.a(MathHelper.floor((box.e + 2.0D) / 16.0D), 0, chunk.entitySlices.length - 1);
+        for (int y = minY; y <= maxY; y++) {
+            List slice = chunk.entitySlices[y];
+            for (int i = 0; i < slice.size(); i++) {
+                Entity entity = (Entity) slice.get(i);
+                if (entity.boundingBox.b(box) && matches(entity, classes)) {
+                    org.bukkit.entity.Entity bukkitEntity = entity.getBukkitEntity();
+                    if (bukkitEntity != null) {
+                        list.add(bukkitEntity);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts an entity joining or leaving the entity slices of a chunk.
+     *
+     * @param chunk the chunk
+     * @param entity the entity
+     * @param delta 1 when the entity joins, -1 when it leaves
+     */
+    public static void count(Chunk chunk, Entity entity, int delta) {
+        int[] count = chunk.entityTypeCounts.get(entity.getClass());
+        if (count == null) {
+            count = new int[1];
+            chunk.entityTypeCounts.put(entity.getClass(), count);
+        }
+        count[0] += delta;
+    }
+
+    private static boolean matches(Entity entity, Class<?>[] classes) {
+        Class<?> entityClass = entity.getClass();
+        if (!bukkitClasses.containsKey(entityClass)) {
+            bukkitClasses.put(entityClass, entity.getBukkitEntity().getClass());
+        }
+        return matches(entityClass, classes);
+    }
+
+    private static boolean matches(Class<?> entityClass, Class<?>[] classes) {
+        Class<?> bukkitClass = bukkitClasses.get(entityClass);
+        for (Class<?> clazz : classes) {
+            if (clazz.isAssignableFrom(bukkitClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
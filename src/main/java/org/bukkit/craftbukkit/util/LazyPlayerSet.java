@@ -2,24 +2,44 @@ package org.bukkit.craftbukkit.util;
 
 import java.util.HashSet;
 import java.util.List;
-import net.minecraft.server.EntityPlayer;
 import net.minecraft.server.MinecraftServer;
 
 import org.bukkit.entity.Player;
 
 public class LazyPlayerSet extends LazyHashSet<Player> {
 
+    // Answer the common read-only queries from the online player index so they do not copy the player list
+    @Override
+    public int size() {
+        if (isLazy()) {
+            return MinecraftServer.getServer().server.getOnlinePlayerIndex().size();
+        }
+        return super.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (isLazy()) {
+            if (!(o instanceof Player)) {
+                return false;
+            }
+            return MinecraftServer.getServer().server.getOnlinePlayerIndex().get(((Player) o).getUniqueId()) == o;
+        }
+        return super.contains(o);
+    }
+
     @Override
     HashSet<Player> makeReference() {
         if (reference != null) {
             throw new IllegalStateException("Reference already created!");
         }
-        List<EntityPlayer> players = MinecraftServer.getServer().getPlayerList().players;
-        HashSet<Player> reference = new HashSet<Player>(players.size());
-        for (EntityPlayer player : players) {
-            reference.add(player.getBukkitEntity());
-        }
-        return reference;
+        List<Player> players = MinecraftServer.getServer().server.getOnlinePlayerView();
+        return new HashSet<Player>(players);
     }
 
 }
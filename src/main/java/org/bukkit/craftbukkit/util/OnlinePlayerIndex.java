@@ -0,0 +1,197 @@
+package org.bukkit.craftbukkit.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Indexes the online players by name, UUID and name prefix.
+ * <p>
+ * Writes happen on the main thread when a player joins or quits, reads may
+ * happen from any thread.
+ */
+public final class OnlinePlayerIndex {
+    private static final Snapshot EMPTY = new Snapshot(new Player[0], new String[0]);
+
+    private final Map<String, Player> byName = new ConcurrentHashMap<String, Player>();
+    private final Map<UUID, Player> byId = new ConcurrentHashMap<UUID, Player>();
+    private final ConcurrentSkipListMap<String, Player> byPrefix = new ConcurrentSkipListMap<String, Player>();
+    private volatile Snapshot snapshot = EMPTY;
+
+    /**
+     * Adds a player who just joined. A player already indexed under the same
+     * name or UUID is replaced, which also covers a player rejoining under a
+     * new name.
+     *
+     * @param player the player
+     */
+    public synchronized void add(Player player) {
+        remove(player);
+        String name = player.getName().toLowerCase();
+
+        byName.put(name, player);
+        byId.put(player.getUniqueId(), player);
+        byPrefix.put(name, player);
+
+        Snapshot current = snapshot;
+        int size = current.players.length;
+        Player[] players = Arrays.copyOf(current.players, size + 1);
+        String[] names = Arrays.copyOf(current.names, size + 1);
+        players[size] = player;
+        names[size] = name;
+        snapshot = new Snapshot(players, names);
+    }
+
+    /**
+     * Removes a player who is quitting.
+     *
+     * @param player the player
+     */
+    public synchronized void remove(Player player) {
+        Snapshot current = snapshot;
+        int size = current.players.length;
+
+        for (int i = 0; i < size; i++) {
+            Player other = current.players[i];
+            if (other != player && !other.getUniqueId().equals(player.getUniqueId())) {
+                continue;
+            }
+
+            String name = current.names[i];
+            byName.remove(name);
+            byPrefix.remove(name);
+            byId.remove(other.getUniqueId());
+
+            Player[] players = new Player[size - 1];
+            String[] names = new String[size - 1];
+            System.arraycopy(current.players, 0, players, 0, i);
+            System.arraycopy(current.players, i + 1, players, i, size - i - 1);
+            System.arraycopy(current.names, 0, names, 0, i);
+            System.arraycopy(current.names, i + 1, names, i, size - i - 1);
+            snapshot = new Snapshot(players, names);
+            return;
+        }
+    }
+
+    public Player getExact(String name) {
+        return byName.get(name.toLowerCase());
+    }
+
+    public Player get(UUID id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Finds the online player with the shortest name starting with the given
+     * prefix, ignoring case.
+     *
+     * @param prefix the name prefix
+     * @return the player, or null if no name matches
+     */
+    public Player getByPrefix(String prefix) {
+        String lowerPrefix = prefix.toLowerCase();
+        Player found = byName.get(lowerPrefix);
+        if (found != null) {
+            return found;
+        }
+
+        int delta = Integer.MAX_VALUE;
+        for (Map.Entry<String, Player> entry : byPrefix.tailMap(lowerPrefix).entrySet()) {
+            String name = entry.getKey();
+            if (!name.startsWith(lowerPrefix)) {
+                break;
+            }
+
+            int curDelta = name.length() - lowerPrefix.length();
+            if (curDelta < delta) {
+                found = entry.getValue();
+                delta = curDelta;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the online players whose name starts with the given prefix,
+     * ignoring case, in name order.
+     *
+     * @param prefix the name prefix
+     * @return the matching players
+     */
+    public List<Player> startingWith(String prefix) {
+        String lowerPrefix = prefix.toLowerCase();
+        List<Player> matchedPlayers = new ArrayList<Player>();
+        for (Map.Entry<String, Player> entry : byPrefix.tailMap(lowerPrefix).entrySet()) {
+            if (!entry.getKey().startsWith(lowerPrefix)) {
+                break;
+            }
+            matchedPlayers.add(entry.getValue());
+        }
+        return matchedPlayers;
+    }
+
+    /**
+     * Finds the online players whose name contains the given string, ignoring
+     * case. An exact match is returned alone.
+     *
+     * @param partialName the partial name
+     * @return the matching players
+     */
+    public List<Player> match(String partialName) {
+        String lowerName = partialName.toLowerCase();
+        Player exact = byName.get(lowerName);
+        if (exact != null) {
+            List<Player> matchedPlayers = new ArrayList<Player>(1);
+            matchedPlayers.add(exact);
+            return matchedPlayers;
+        }
+
+        Snapshot current = snapshot;
+        List<Player> matchedPlayers = new ArrayList<Player>();
+        for (int i = 0; i < current.names.length; i++) {
+            if (current.names[i].contains(lowerName)) {
+                matchedPlayers.add(current.players[i]);
+            }
+        }
+        return matchedPlayers;
+    }
+
+    /**
+     * Gets an unmodifiable view of the online players in join order. The view
+     * is only rebuilt when a player joins or quits, so repeated calls do not
+     * allocate.
+     *
+     * @return the online players
+     */
+    public List<Player> view() {
+        return snapshot.view;
+    }
+
+    public Player[] toArray() {
+        Player[] players = snapshot.players;
+        return Arrays.copyOf(players, players.length);
+    }
+
+    public int size() {
+        return snapshot.players.length;
+    }
+
+    private static final class Snapshot {
+        final Player[] players;
+        final String[] names;
+        final List<Player> view;
+
+        Snapshot(Player[] players, String[] names) {
+            this.players = players;
+            this.names = names;
+            this.view = Collections.unmodifiableList(Arrays.asList(players));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.bukkit.craftbukkit.util;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts for the section arrays only chunk snapshots still hold.
+ * <p>
+ * A chunk section hands the same lease to every snapshot taken while it
+ * shares its arrays, and charges the lease with the old arrays it lets go
+ * of when it copies them on write. Those bytes count as retained until the
+ * lease, and with it every snapshot holding it, has been garbage collected.
+ * A snapshot taken after a partial copy shares the lease of the earlier
+ * ones, so the figure may stay up a little longer than the arrays do, but
+ * it never undercounts.
+ */
+public final class SnapshotLease {
+    private static final ReferenceQueue<SnapshotLease> queue = new ReferenceQueue<SnapshotLease>();
+    private static final Set<Tracker> trackers = Collections.newSetFromMap(new ConcurrentHashMap<Tracker, Boolean>());
+    private static final AtomicLong retainedBytes = new AtomicLong();
+
+    private Tracker tracker;
+
+    /**
+     * Charges this lease with arrays only its snapshots hold now.
+     *
+     * @param bytes the size of the arrays
+     */
+    public synchronized void retain(long bytes) {
+        expunge();
+        if (tracker == null) {
+            tracker = new Tracker(this);
+            trackers.add(tracker);
+        }
+        tracker.bytes.addAndGet(bytes);
+        retainedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Gets the number of bytes of section arrays held only by chunk
+     * snapshots that have not been garbage collected yet.
+     *
+     * @return the retained bytes
+     */
+    public static long getRetainedBytes() {
+        expunge();
+        return retainedBytes.get();
+    }
+
+    private static void expunge() {
+        Reference<? extends SnapshotLease> reference;
+        while ((reference = queue.poll()) != null) {
+            Tracker tracker = (Tracker) reference;
+            if (trackers.remove(tracker)) {
+                retainedBytes.addAndGet(-tracker.bytes.get());
+            }
+        }
+    }
+
+    private static final class Tracker extends PhantomReference<SnapshotLease> {
+        final AtomicLong bytes = new AtomicLong();
+
+        Tracker(SnapshotLease lease) {
+            super(lease, queue);
+        }
+    }
+}
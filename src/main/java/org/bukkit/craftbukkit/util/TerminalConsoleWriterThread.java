@@ -2,15 +2,38 @@ package org.bukkit.craftbukkit.util;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jline.console.ConsoleReader;
 import net.minecraft.util.com.mojang.util.QueueLogAppender;
 import org.bukkit.craftbukkit.Main;
 
+/**
+ * Writes the log to the terminal.
+ * <p>
+ * A pump thread moves log events from the log4j queue into a bounded queue,
+ * and this thread writes everything waiting in it at once, redrawing the
+ * prompt only once per batch. When the terminal cannot keep up and the
+ * queue is full, new messages are dropped and a line saying how many were
+ * dropped is written with the next batch.
+ */
 public class TerminalConsoleWriterThread implements Runnable {
+    private static final int MAX_QUEUED = 8192;
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    private static final BlockingQueue<String> queue = new ArrayBlockingQueue<String>(MAX_QUEUED);
+    private static final AtomicInteger droppedSinceWrite = new AtomicInteger();
+    private static final AtomicLong dropped = new AtomicLong();
+
     final private ConsoleReader reader;
     final private OutputStream output;
+    private final Charset charset = Charset.defaultCharset();
 
     public TerminalConsoleWriterThread(OutputStream output, ConsoleReader reader) {
         this.output = output;
@@ -18,35 +41,94 @@ public class TerminalConsoleWriterThread implements Runnable {
     }
 
     public void run() {
-        String message;
+        Thread pump = new Thread(new Runnable() {
+            public void run() {
+                pump();
+            }
+        }, "Console Log Pump");
+        pump.setDaemon(true);
+        pump.start();
+
+        List<String> batch = new ArrayList<String>();
+        StringBuilder builder = new StringBuilder();
 
-        // Using name from log4j config in vanilla jar
         while (true) {
-            message = QueueLogAppender.getNextLogEvent("TerminalConsole");
-            if (message == null) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
                 continue;
             }
+            queue.drainTo(batch);
+
+            builder.setLength(0);
+            for (int i = 0; i < batch.size(); i++) {
+                builder.append(batch.get(i));
+            }
+            batch.clear();
+
+            int skipped = droppedSinceWrite.getAndSet(0);
+            if (skipped > 0) {
+                builder.append("[Console] ").append(skipped).append(" log messages were not shown, the console could not keep up").append(LINE_SEPARATOR);
+            }
 
             try {
-                if (Main.useJline) {
-                    reader.print(ConsoleReader.RESET_LINE + "");
-                    reader.flush();
-                    output.write(message.getBytes());
-                    output.flush();
-
-                    try {
-                        reader.drawLine();
-                    } catch (Throwable ex) {
-                        reader.getCursorBuffer().clear();
-                    }
-                    reader.flush();
-                } else {
-                    output.write(message.getBytes());
-                    output.flush();
-                }
+                write(builder.toString().getBytes(charset));
             } catch (IOException ex) {
                 Logger.getLogger(TerminalConsoleWriterThread.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
     }
+
+    private void pump() {
+        // Using name from log4j config in vanilla jar
+        while (true) {
+            String message = QueueLogAppender.getNextLogEvent("TerminalConsole");
+            if (message == null) {
+                continue;
+            }
+
+            if (!queue.offer(message)) {
+                droppedSinceWrite.incrementAndGet();
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        if (Main.useJline) {
+            reader.print(ConsoleReader.RESET_LINE + "");
+            reader.flush();
+            output.write(bytes);
+            output.flush();
+
+            try {
+                reader.drawLine();
+            } catch (Throwable ex) {
+                reader.getCursorBuffer().clear();
+            }
+            reader.flush();
+        } else {
+            output.write(bytes);
+            output.flush();
+        }
+    }
+
+    /**
+     * Gets the number of log messages waiting to be written to the console.
+     *
+     * @return the number of queued messages
+     */
+    public static int getQueuedMessages() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of log messages dropped because the console queue was
+     * full.
+     *
+     * @return the number of dropped messages
+     */
+    public static long getDroppedMessages() {
+        return dropped.get();
+    }
 }
@@ -0,0 +1,277 @@
+package org.bukkit.craftbukkit.util;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraft.server.TileEntity;
+
+/**
+ * The tile entities of a world's loaded chunks.
+ * <p>
+ * Besides the set of every tile entity, the registry keeps the tile entities
+ * of each chunk, so unloading a chunk drops them in one go, and an array of
+ * only the tile entities that tick. A tile entity ticks if its class
+ * overrides {@link TileEntity#h()}; signs, skulls and the like never enter the
+ * ticking array. Removal from the ticking array swaps in the last entry and
+ * keeps {@link #tickPosition} valid, like {@link EntityTickList}.
+ */
+public final class TileEntityRegistry extends AbstractSet<TileEntity> {
+    private static final Map<Class<?>, Boolean> tickingClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    private final HashSet<TileEntity> all = new HashSet<TileEntity>();
+    private final LongObjectHashMap<List<TileEntity>> chunks = new LongObjectHashMap<List<TileEntity>>();
+    private TileEntity[] ticking = new TileEntity[64];
+    private int tickingSize;
+    // The tile entity being ticked, or -1 outside of the tile entity pass
+    public int tickPosition = -1;
+    private final Map<Class<?>, long[]> tickTimes = new IdentityHashMap<Class<?>, long[]>();
+
+    /**
+     * Gets whether tile entities of the given class do anything when ticked.
+     *
+     * @param clazz the tile entity class
+     * @return true if the class overrides {@link TileEntity#h()}
+     */
+    public static boolean isTicking(Class<?> clazz) {
+        Boolean result = tickingClasses.get(clazz);
+        if (result == null) {
+            result = Boolean.FALSE;
+            for (Class<?> current = clazz; current != TileEntity.class && current != null; current = current.getSuperclass()) {
+                try {
+                    current.getDeclaredMethod("h");
+                    result = Boolean.TRUE;
+                    break;
+                } catch (NoSuchMethodException ex) {
+                    // Keep looking in the superclass
+                }
+            }
+            tickingClasses.put(clazz, result);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean add(TileEntity tileentity) {
+        if (!all.add(tileentity)) {
+            return false;
+        }
+
+        file(tileentity);
+
+        if (isTicking(tileentity.getClass())) {
+            if (tickingSize == ticking.length) {
+                ticking = Java15Compat.Arrays_copyOf(ticking, tickingSize << 1);
+            }
+            tileentity.tickIndex = tickingSize;
+            ticking[tickingSize++] = tileentity;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!all.remove(o)) {
+            return false;
+        }
+
+        forget((TileEntity) o);
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean changed = false;
+        for (Object o : c) {
+            changed |= remove(o);
+        }
+        return changed;
+    }
+
+    /**
+     * Files a registered tile entity under the chunk of its current position,
+     * for tile entities added before their position was set.
+     *
+     * @param tileentity the tile entity
+     */
+    public void relocate(TileEntity tileentity) {
+        if (!all.contains(tileentity) || tileentity.tickChunkKey == LongHash.toLong(tileentity.x >> 4, tileentity.z >> 4)) {
+            return;
+        }
+
+        unfile(tileentity);
+        file(tileentity);
+    }
+
+    /**
+     * Removes every tile entity registered in the given chunk.
+     *
+     * @param chunkX the chunk x coordinate
+     * @param chunkZ the chunk z coordinate
+     */
+    public void removeChunk(int chunkX, int chunkZ) {
+        List<TileEntity> chunk = chunks.remove(LongHash.toLong(chunkX, chunkZ));
+        if (chunk == null) {
+            return;
+        }
+
+        for (TileEntity tileentity : chunk) {
+            all.remove(tileentity);
+            removeTicking(tileentity);
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return all.contains(o);
+    }
+
+    @Override
+    public int size() {
+        return all.size();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < tickingSize; i++) {
+            ticking[i].tickIndex = -1;
+            ticking[i] = null;
+        }
+        tickingSize = 0;
+        tickPosition = -1;
+        all.clear();
+        chunks.clear();
+    }
+
+    @Override
+    public Iterator<TileEntity> iterator() {
+        final Iterator<TileEntity> iterator = all.iterator();
+        return new Iterator<TileEntity>() {
+            private TileEntity last;
+
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            public TileEntity next() {
+                return last = iterator.next();
+            }
+
+            public void remove() {
+                iterator.remove();
+                forget(last);
+            }
+        };
+    }
+
+    public int tickingSize() {
+        return tickingSize;
+    }
+
+    public TileEntity getTicking(int index) {
+        if (index >= tickingSize || index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + tickingSize);
+        }
+        return ticking[index];
+    }
+
+    /**
+     * Adds the time spent ticking a tile entity to its class's total.
+     *
+     * @param clazz the tile entity class
+     * @param nanos the time taken, in nanoseconds
+     */
+    public void recordTickTime(Class<?> clazz, long nanos) {
+        long[] total = tickTimes.get(clazz);
+        if (total == null) {
+            total = new long[2];
+            tickTimes.put(clazz, total);
+        }
+        total[0] += nanos;
+        total[1]++;
+    }
+
+    /**
+     * Gets the total time spent ticking each class of tile entity since the
+     * last reset. Only recorded while plugin profiling is enabled.
+     *
+     * @return the tile entity class names mapped to the nanoseconds spent and
+     *     the number of ticks, in that order
+     */
+    public Map<String, long[]> getTickTimes() {
+        Map<String, long[]> result = new HashMap<String, long[]>(tickTimes.size());
+        for (Map.Entry<Class<?>, long[]> entry : tickTimes.entrySet()) {
+            result.put(entry.getKey().getSimpleName(), entry.getValue().clone());
+        }
+        return result;
+    }
+
+    public void resetTickTimes() {
+        tickTimes.clear();
+    }
+
+    private void file(TileEntity tileentity) {
+        long key = LongHash.toLong(tileentity.x >> 4, tileentity.z >> 4);
+        List<TileEntity> chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = new ArrayList<TileEntity>();
+            chunks.put(key, chunk);
+        }
+        chunk.add(tileentity);
+        tileentity.tickChunkKey = key;
+    }
+
+    private void unfile(TileEntity tileentity) {
+        List<TileEntity> chunk = chunks.get(tileentity.tickChunkKey);
+        if (chunk != null) {
+            chunk.remove(tileentity);
+            if (chunk.isEmpty()) {
+                chunks.remove(tileentity.tickChunkKey);
+            }
+        }
+    }
+
+    // Drops a tile entity already removed from the set of all tile entities from its chunk and the ticking array
+    private void forget(TileEntity tileentity) {
+        unfile(tileentity);
+        removeTicking(tileentity);
+    }
+
+    private void removeTicking(TileEntity tileentity) {
+        int index = tileentity.tickIndex;
+        if (index < 0 || index >= tickingSize || ticking[index] != tileentity) {
+            return;
+        }
+
+        int last = --tickingSize;
+        if (index < tickPosition) {
+            // Already ticked, move the current tile entity into the hole and the unticked tail entry onto the cursor
+            move(tickPosition, index);
+            move(last, tickPosition);
+            tickPosition--;
+        } else {
+            if (index == tickPosition) {
+                tickPosition--;
+            }
+            move(last, index);
+        }
+
+        ticking[last] = null;
+        tileentity.tickIndex = -1;
+    }
+
+    private void move(int from, int to) {
+        if (from != to) {
+            TileEntity tileentity = ticking[from];
+            tileentity.tickIndex = to;
+            ticking[to] = tileentity;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import static org.hamcrest.Matchers.*;
 import net.minecraft.server.Enchantment;
 
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.support.AbstractTestingBase;
 import org.junit.Test;
 
@@ -33,4 +34,44 @@ public class NMSCraftItemStackTest extends AbstractTestingBase {
         ItemStack clone = itemStack.clone();
         assertThat(clone, is(itemStack));
     }
+
+    @Test
+    public void testItemMetaFollowsTag() throws Exception {
+        net.minecraft.server.ItemStack nmsItemStack = new net.minecraft.server.ItemStack(net.minecraft.server.Items.DIAMOND_SWORD);
+        nmsItemStack.c("First");
+        ItemStack itemStack = CraftItemStack.asCraftMirror(nmsItemStack);
+
+        ItemMeta meta = itemStack.getItemMeta();
+        assertThat(meta.getDisplayName(), is("First"));
+        meta.setDisplayName("Changed");
+        assertThat(itemStack.getItemMeta().getDisplayName(), is("First"));
+
+        nmsItemStack.getTag().getCompound("display").setString("Name", "Second");
+        assertThat(itemStack.getItemMeta().getDisplayName(), is("Second"));
+    }
+
+    @Test
+    public void testItemMetaFollowsTagWithSameHash() throws Exception {
+        net.minecraft.server.ItemStack nmsItemStack = new net.minecraft.server.ItemStack(net.minecraft.server.Items.DIAMOND_SWORD);
+        nmsItemStack.c("Aa");
+        ItemStack itemStack = CraftItemStack.asCraftMirror(nmsItemStack);
+        assertThat(itemStack.getItemMeta().getDisplayName(), is("Aa"));
+
+        // "Aa" and "BB" share a String hash, so both tags hash the same
+        nmsItemStack.getTag().getCompound("display").setString("Name", "BB");
+        assertThat(itemStack.getItemMeta().getDisplayName(), is("BB"));
+    }
+
+    @Test
+    public void testSimilarComparesTagHashes() throws Exception {
+        net.minecraft.server.ItemStack first = new net.minecraft.server.ItemStack(net.minecraft.server.Items.DIAMOND_SWORD);
+        first.c("Name");
+        net.minecraft.server.ItemStack second = first.cloneItemStack();
+        ItemStack firstMirror = CraftItemStack.asCraftMirror(first);
+        ItemStack secondMirror = CraftItemStack.asCraftMirror(second);
+
+        assertThat(firstMirror.isSimilar(secondMirror), is(true));
+        second.c("Other");
+        assertThat(firstMirror.isSimilar(secondMirror), is(false));
+    }
 }
@@ -0,0 +1,147 @@
+package org.bukkit.craftbukkit.profile;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import net.minecraft.util.com.mojang.authlib.GameProfile;
+import net.minecraft.util.com.mojang.authlib.ProfileLookupCallback;
+
+import org.junit.Test;
+
+public class ProfileServiceTest {
+    private static final Executor DIRECT = new Executor() {
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private static final class LocalResolver implements ProfileResolver {
+        final Map<String, GameProfile> profiles = new HashMap<String, GameProfile>();
+        final List<String[]> batches = new ArrayList<String[]>();
+
+        LocalResolver add(String name) {
+            profiles.put(name.toLowerCase(), new GameProfile(UUID.randomUUID(), name));
+            return this;
+        }
+
+        public synchronized void findProfilesByNames(String[] names, ProfileLookupCallback callback) {
+            batches.add(names);
+            for (String name : names) {
+                GameProfile profile = profiles.get(name.toLowerCase());
+                if (profile == null) {
+                    callback.onProfileLookupFailed(new GameProfile(null, name), null);
+                } else {
+                    callback.onProfileLookupSucceeded(profile);
+                }
+            }
+        }
+
+        public GameProfile findProfileById(UUID id) {
+            for (GameProfile profile : profiles.values()) {
+                if (profile.getId().equals(id)) {
+                    return profile;
+                }
+            }
+            return null;
+        }
+    }
+
+    private ProfileCache memoryCache() {
+        return new ProfileCache(null, TimeUnit.DAYS.toMillis(1), TimeUnit.HOURS.toMillis(1));
+    }
+
+    @Test
+    public void testLookupResolvesAndCaches() throws Exception {
+        LocalResolver resolver = new LocalResolver().add("Notch");
+        ProfileService service = new ProfileService(resolver, memoryCache(), DIRECT);
+
+        GameProfile profile = service.lookup("notch").get(5, TimeUnit.SECONDS);
+        assertThat(profile, is(not(nullValue())));
+        assertThat(profile.getName(), is("Notch"));
+        assertThat(service.getCachedProfile("NOTCH").getId(), is(profile.getId()));
+        assertThat(service.getCachedProfile(profile.getId()).getName(), is("Notch"));
+    }
+
+    @Test
+    public void testMissingNameIsCached() throws Exception {
+        LocalResolver resolver = new LocalResolver();
+        ProfileService service = new ProfileService(resolver, memoryCache(), DIRECT);
+
+        assertThat(service.lookup("nobody").get(5, TimeUnit.SECONDS), is(nullValue()));
+        assertThat(service.lookup("nobody").isDone(), is(true));
+        assertThat(resolver.batches.size(), is(1));
+    }
+
+    @Test
+    public void testCallback() throws Exception {
+        LocalResolver resolver = new LocalResolver().add("jeb_");
+        ProfileService service = new ProfileService(resolver, memoryCache(), DIRECT);
+        final GameProfile[] result = new GameProfile[1];
+
+        service.lookup("jeb_", new ProfileCallback() {
+            public void onLookupComplete(GameProfile profile) {
+                result[0] = profile;
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertThat(result[0], is(not(nullValue())));
+        assertThat(result[0].getName(), is("jeb_"));
+    }
+
+    @Test
+    public void testCachePersists() throws IOException {
+        File file = File.createTempFile("profilecache", ".json");
+        file.deleteOnExit();
+
+        UUID id = UUID.randomUUID();
+        ProfileCache cache = new ProfileCache(file, TimeUnit.DAYS.toMillis(1), TimeUnit.HOURS.toMillis(1));
+        cache.put(new GameProfile(id, "Dinnerbone"));
+        cache.putMissing("nobody");
+        cache.save();
+
+        ProfileCache loaded = new ProfileCache(file, TimeUnit.DAYS.toMillis(1), TimeUnit.HOURS.toMillis(1));
+        loaded.load();
+        assertThat(loaded.get("dinnerbone").getId(), is(id));
+        assertThat(loaded.get(id).getProfile().getName(), is("Dinnerbone"));
+        assertThat(loaded.get("nobody"), is(not(nullValue())));
+        assertThat(loaded.get("nobody").getProfile(), is(nullValue()));
+    }
+
+    @Test
+    public void testUserCacheSeedsProfiles() throws IOException {
+        File file = File.createTempFile("usercache", ".json");
+        file.deleteOnExit();
+
+        UUID id = UUID.randomUUID();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("[{\"name\":\"Searge\",\"uuid\":\"" + id + "\",\"expiresOn\":\"2999-01-01 00:00:00 +0000\"},"
+                + "{\"name\":\"Old\",\"uuid\":\"" + UUID.randomUUID() + "\",\"expiresOn\":\"2000-01-01 00:00:00 +0000\"}]");
+        writer.close();
+
+        ProfileCache cache = memoryCache();
+        cache.loadUserCache(file);
+        assertThat(cache.get("searge").getId(), is(id));
+        assertThat(cache.get("old"), is(nullValue()));
+    }
+
+    @Test
+    public void testExpiredEntriesAreDropped() {
+        ProfileCache cache = new ProfileCache(null, -1, -1);
+        cache.put(new GameProfile(UUID.randomUUID(), "Grumm"));
+
+        assertThat(cache.get("grumm"), is(nullValue()));
+    }
+}
@@ -0,0 +1,44 @@
+package org.bukkit.craftbukkit.util;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import net.minecraft.server.NBTCompressedStreamTools;
+import net.minecraft.server.NBTReadLimiter;
+import net.minecraft.server.NBTTagCompound;
+
+import org.junit.Test;
+
+public class CompressedTagCacheTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        NBTTagCompound tag = new NBTTagCompound();
+        tag.setString("Name", "Sword of Testing");
+        tag.setInt("RepairCost", 3);
+
+        byte[] bytes = CompressedTagCache.compress(tag);
+        assertThat(NBTCompressedStreamTools.a(bytes, new NBTReadLimiter(2097152L)), is(tag));
+    }
+
+    @Test
+    public void testChangedTag() throws Exception {
+        NBTTagCompound tag = new NBTTagCompound();
+        tag.setString("Name", "Before");
+        byte[] before = CompressedTagCache.compress(tag);
+
+        tag.setString("Name", "After");
+        byte[] after = CompressedTagCache.compress(tag);
+
+        assertThat(after, is(not(before)));
+        assertThat(NBTCompressedStreamTools.a(after, new NBTReadLimiter(2097152L)), is(tag));
+    }
+
+    @Test
+    public void testEqualTagsShareBytes() throws Exception {
+        NBTTagCompound tag = new NBTTagCompound();
+        tag.setString("Name", "Shared");
+
+        assertThat(CompressedTagCache.compress((NBTTagCompound) tag.clone()), is(sameInstance(CompressedTagCache.compress(tag))));
+    }
+}
@@ -0,0 +1,38 @@
+package org.bukkit.craftbukkit.util;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.server.EntityItem;
+
+import org.junit.Test;
+
+public class EntityMergeServiceTest {
+
+    @Test
+    public void testSectionOverCap() {
+        EntityMergeService service = new EntityMergeService(null);
+        List<EntityItem> batch = new ArrayList<EntityItem>();
+        for (int i = 0; i < 10; i++) {
+            EntityItem item = new EntityItem(null);
+            item.setPosition(8.5D, 64.0D, 8.5D);
+            batch.add(item);
+        }
+
+        List<EntityItem> deferred = new ArrayList<EntityItem>();
+        Map<Long, List<EntityItem>> sections = service.partition(batch, 4, deferred);
+
+        assertThat(sections.size(), is(1));
+        assertThat(sections.values().iterator().next(), is(batch.subList(0, 4)));
+        assertThat(deferred, is(batch.subList(4, 10)));
+        assertThat(batch.size(), is(10));
+        for (EntityItem item : deferred) {
+            assertTrue(service.isQueued(item));
+        }
+        assertFalse(service.isQueued(batch.get(0)));
+    }
+}
@@ -0,0 +1,32 @@
+package org.bukkit.craftbukkit.util;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import net.minecraft.server.TileEntityFurnace;
+
+import org.junit.Test;
+
+public class TileEntityRegistryTest {
+
+    @Test
+    public void testRelocateAfterAdd() {
+        TileEntityRegistry registry = new TileEntityRegistry();
+        TileEntityFurnace furnace = new TileEntityFurnace();
+        registry.add(furnace);
+
+        // Placed tile entities are registered before the chunk gives them their position
+        furnace.x = 40;
+        furnace.y = 64;
+        furnace.z = -24;
+        registry.relocate(furnace);
+
+        registry.removeChunk(0, 0);
+        assertThat(registry.size(), is(1));
+        assertThat(registry.tickingSize(), is(1));
+
+        registry.removeChunk(2, -2);
+        assertThat(registry.size(), is(0));
+        assertThat(registry.tickingSize(), is(0));
+    }
+}